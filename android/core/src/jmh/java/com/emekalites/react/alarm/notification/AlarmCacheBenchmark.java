@@ -0,0 +1,96 @@
+package com.emekalites.react.alarm.notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the alarm cache and the lookups done while scheduling: duplicate checks by fire time,
+ * pages of alarms due in a time range and write-through updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlarmCacheBenchmark {
+
+    private static final int PROBES = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    public int alarms;
+
+    private List<AlarmModel> models;
+    private AlarmCache cache;
+    private long[] probeTimes;
+    private String[] probeTags;
+    private AlarmModel updated;
+    private long updateTime;
+
+    @Setup
+    public void setup() {
+        models = BenchmarkAlarms.generate(alarms);
+        cache = new AlarmCache(alarms);
+        cache.load(models);
+
+        // half of the probes hit an alarm's fire time, the others fall between alarms
+        Random random = new Random(7);
+        probeTimes = new long[PROBES];
+        probeTags = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probeTimes[i] = i % 2 == 0
+                    ? models.get(random.nextInt(models.size())).getFireTime()
+                    : BenchmarkAlarms.BASE_TIME + random.nextInt((int) (BenchmarkAlarms.SPAN / 1000)) * 1000L + 1;
+            probeTags[i] = i % 4 < 2 ? null : BenchmarkAlarms.TAGS[random.nextInt(BenchmarkAlarms.TAGS.length)];
+        }
+
+        updated = new AlarmModel(models.get(models.size() / 2));
+        updateTime = updated.getFireTime();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public AlarmCache load() {
+        AlarmCache fresh = new AlarmCache(alarms);
+        fresh.load(models);
+        return fresh;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void findDuplicate(Blackhole blackhole) {
+        for (int i = 0; i < PROBES; i++) {
+            blackhole.consume(cache.findByFireTime(probeTimes[i], probeTags[i]));
+        }
+    }
+
+    @Benchmark
+    public List<AlarmModel> dueInNextHour() {
+        long from = BenchmarkAlarms.BASE_TIME + BenchmarkAlarms.SPAN / 2;
+        return cache.getActiveAlarms(from, from + 60 * BenchmarkAlarms.MINUTE, null, 0, 0);
+    }
+
+    @Benchmark
+    public List<AlarmModel> pageByTag() {
+        return cache.getActiveAlarms(BenchmarkAlarms.BASE_TIME, BenchmarkAlarms.BASE_TIME + BenchmarkAlarms.SPAN,
+                "meeting", 100, 50);
+    }
+
+    @Benchmark
+    public void update() {
+        // moves one alarm back and forth, as delivering a repeating alarm does
+        updateTime = updateTime == updated.getFireTime() ? updateTime + BenchmarkAlarms.DAY : updated.getFireTime();
+        AlarmModel alarm = new AlarmModel(updated);
+        alarm.setFireTime(updateTime);
+        cache.put(alarm);
+    }
+}
@@ -0,0 +1,52 @@
+package com.emekalites.react.alarm.notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding all alarms, as when they are stored or read back from the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AlarmCodecBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int alarms;
+
+    private List<AlarmModel> models;
+    private byte[][] records;
+
+    @Setup
+    public void setup() {
+        models = BenchmarkAlarms.generate(alarms);
+        records = new byte[models.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = AlarmCodec.encode(models.get(i));
+        }
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        for (AlarmModel alarm : models) {
+            blackhole.consume(AlarmCodec.encode(alarm));
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        for (byte[] record : records) {
+            blackhole.consume(AlarmCodec.decode(record));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.emekalites.react.alarm.notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffing an app's desired alarms against the scheduled ones, with nothing changed and with
+ * 1% of the alarms added, changed and removed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AlarmSyncBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int alarms;
+
+    private List<AlarmModel> existing;
+    private List<AlarmModel> same;
+    private List<AlarmModel> changed;
+    private long now;
+
+    @Setup
+    public void setup() {
+        existing = BenchmarkAlarms.generate(alarms);
+        for (AlarmModel alarm : existing) {
+            alarm.setExternalKey("note-" + alarm.getId());
+        }
+        now = BenchmarkAlarms.BASE_TIME - BenchmarkAlarms.DAY;
+
+        same = new ArrayList<>(alarms);
+        changed = new ArrayList<>(alarms);
+        for (int i = 0; i < alarms; i++) {
+            AlarmModel alarm = existing.get(i);
+            same.add(new AlarmModel(alarm));
+            if (i % 100 == 1) {
+                // removed
+                continue;
+            }
+            AlarmModel copy = new AlarmModel(alarm);
+            if (i % 100 == 2) {
+                copy.setTitle("Changed " + i);
+            } else if (i % 100 == 3) {
+                copy.setExternalKey("note-new-" + i);
+            }
+            changed.add(copy);
+        }
+    }
+
+    @Benchmark
+    public AlarmSync unchanged() {
+        return AlarmSync.diff(existing, same, now);
+    }
+
+    @Benchmark
+    public AlarmSync onePercentChanged() {
+        return AlarmSync.diff(existing, changed, now);
+    }
+}
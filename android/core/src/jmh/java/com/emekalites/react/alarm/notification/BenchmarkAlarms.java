@@ -0,0 +1,73 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible sets of alarms for the benchmarks, a mix of once and repeating alarms spread
+ * over 30 days with a handful of tags and mostly default strings, like the ones apps schedule.
+ */
+final class BenchmarkAlarms {
+
+    // fixed start so runs compare, 2027-01-15T08:00:00Z
+    static final long BASE_TIME = 1800000000000L;
+
+    static final long MINUTE = 60 * 1000;
+    static final long DAY = 24 * 60 * MINUTE;
+    static final long SPAN = 30 * DAY;
+
+    static final String[] TAGS = {"", "medication", "meeting", "workout", "reminder"};
+
+    private static final String[] INTERVALS = {
+            Recurrence.MINUTELY, Recurrence.HOURLY, Recurrence.DAILY,
+            Recurrence.WEEKLY, Recurrence.MONTHLY, Recurrence.YEARLY,
+    };
+
+    private BenchmarkAlarms() {}
+
+    static List<AlarmModel> generate(int count) {
+        Random random = new Random(42);
+        ArrayList<AlarmModel> alarms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AlarmModel alarm = new AlarmModel();
+            alarm.setId(i + 1);
+            alarm.setNotificationId(1000000 + i);
+            // whole minutes, so some alarms share a fire time
+            alarm.setFireTime(BASE_TIME + random.nextInt((int) (SPAN / MINUTE)) * MINUTE);
+            alarm.setRequestedFireTime(alarm.getFireTime());
+            alarm.setTitle(i % 4 == 0 ? "My Notification Title" : "Alarm " + i);
+            alarm.setMessage(i % 3 == 0 ? "My Notification Message" : "Take the pills number " + i);
+            alarm.setChannel("my_channel_id");
+            alarm.setTicker("");
+            alarm.setSmallIcon("ic_launcher");
+            alarm.setLargeIcon("");
+            alarm.setColor("red");
+            alarm.setTag(TAGS[random.nextInt(TAGS.length)]);
+            alarm.setData(i % 2 == 0 ? null : "{\"id\":" + i + "}");
+            alarm.setAutoCancel(true);
+            alarm.setVibrate(true);
+            alarm.setPlaySound(true);
+            alarm.setVolume(0.5);
+            alarm.setSnoozeInterval(1);
+            alarm.setIntervalValue(1);
+
+            if (random.nextInt(3) == 0) {
+                String interval = INTERVALS[random.nextInt(INTERVALS.length)];
+                alarm.setScheduleType("repeat");
+                alarm.setInterval(interval);
+                alarm.setIntervalValue(1 + random.nextInt(3));
+                if (Recurrence.WEEKLY.equals(interval)) {
+                    alarm.setWeekdays(1 + random.nextInt(0x7F));
+                } else if (Recurrence.MONTHLY.equals(interval) || Recurrence.YEARLY.equals(interval)) {
+                    alarm.setMonthDay(random.nextInt(5) == 0 ? Recurrence.LAST_DAY_OF_MONTH : 1 + random.nextInt(31));
+                }
+            } else {
+                alarm.setScheduleType("once");
+                alarm.setInterval(Recurrence.HOURLY);
+            }
+            alarms.add(alarm);
+        }
+        return alarms;
+    }
+}
@@ -0,0 +1,47 @@
+package com.emekalites.react.alarm.notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Notification ids handed out while several threads schedule at once. Reserving a block stands
+ * in for the database write with a short pause.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdAllocatorBenchmark {
+
+    private IdAllocator allocator;
+
+    @Setup
+    public void setup() {
+        allocator = new IdAllocator(IdAllocator.FIRST_ID, IdAllocator.DEFAULT_BLOCK, new IdAllocator.Reservation() {
+            @Override
+            public void reserve(int limit) {
+                // about the time of a small WAL commit
+                LockSupport.parkNanos(50000);
+            }
+        });
+    }
+
+    @Benchmark
+    public int next() {
+        return allocator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int nextContended() {
+        return allocator.next();
+    }
+}
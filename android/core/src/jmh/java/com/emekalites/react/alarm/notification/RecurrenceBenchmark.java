@@ -0,0 +1,57 @@
+package com.emekalites.react.alarm.notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Next occurrence of every repeating alarm, right after it fired and after the device was off
+ * for a month, when occurrences have to be skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecurrenceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int alarms;
+
+    private List<AlarmModel> repeating;
+
+    @Setup
+    public void setup() {
+        repeating = new ArrayList<>();
+        for (AlarmModel alarm : BenchmarkAlarms.generate(alarms)) {
+            if ("repeat".equals(alarm.getScheduleType())) {
+                repeating.add(alarm);
+            }
+        }
+    }
+
+    @Benchmark
+    public long nextOccurrence() {
+        long sum = 0;
+        for (AlarmModel alarm : repeating) {
+            sum += Recurrence.of(alarm).next(alarm.getFireTime(), 1, alarm.getFireTime());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long catchUpAfterMonth() {
+        long sum = 0;
+        for (AlarmModel alarm : repeating) {
+            sum += Recurrence.of(alarm).next(alarm.getFireTime(), 1, alarm.getFireTime() + BenchmarkAlarms.SPAN);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,219 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Bounded write-through cache of active alarms kept by {@link AlarmDatabase}.
+ *
+ * Alarms are indexed by id (in LRU order), by notification id and by fire time. The cache stores
+ * and hands out copies, so callers can't change a cached alarm without writing it back.
+ * Once every active alarm has been loaded the cache is complete and can answer list queries on
+ * its own; it stops being complete as soon as an entry has to be evicted.
+ */
+class AlarmCache {
+
+    private static final class Entry implements Comparable<Entry> {
+        final AlarmModel alarm;
+        final int id;
+        final int notificationId;
+        final long fireTime;
+
+        Entry(AlarmModel alarm) {
+            this.alarm = alarm;
+            this.id = alarm.getId();
+            this.notificationId = alarm.getNotificationId();
+            this.fireTime = alarm.getFireTime();
+        }
+
+        // bound for range lookups in the fire time index
+        Entry(long fireTime, int id) {
+            this.alarm = null;
+            this.id = id;
+            this.notificationId = 0;
+            this.fireTime = fireTime;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int cmp = Long.compare(fireTime, other.fireTime);
+            return cmp != 0 ? cmp : Integer.compare(id, other.id);
+        }
+    }
+
+    private final int maxSize;
+
+    private final LinkedHashMap<Integer, Entry> byId = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<Integer, Entry> byNotificationId = new HashMap<>();
+    private final TreeSet<Entry> byFireTime = new TreeSet<>();
+
+    private boolean loaded;
+    private boolean complete;
+
+    // incremented by every change, tells a reader whether the cache was written during its query
+    private long writeCount;
+
+    AlarmCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Replaces the content of the cache with all active alarms read from the database.
+     */
+    synchronized void load(List<AlarmModel> alarms) {
+        clear();
+        writeCount++;
+        for (AlarmModel alarm : alarms) {
+            add(new Entry(new AlarmModel(alarm)));
+        }
+        loaded = true;
+        complete = alarms.size() <= maxSize;
+        trim();
+    }
+
+    synchronized void clear() {
+        writeCount++;
+        byId.clear();
+        byNotificationId.clear();
+        byFireTime.clear();
+        loaded = false;
+        complete = false;
+    }
+
+    synchronized AlarmModel get(int id) {
+        Entry entry = byId.get(id);
+        return entry != null ? new AlarmModel(entry.alarm) : null;
+    }
+
+    synchronized AlarmModel getByNotificationId(int notificationId) {
+        Entry entry = byNotificationId.get(notificationId);
+        return entry != null ? new AlarmModel(entry.alarm) : null;
+    }
+
+    /**
+     * First cached alarm that fires at the given time, optionally with the given tag only.
+     */
+    synchronized AlarmModel findByFireTime(long fireTime, String tag) {
+        Entry from = new Entry(fireTime, Integer.MIN_VALUE);
+        Entry to = new Entry(fireTime, Integer.MAX_VALUE);
+        for (Entry entry : byFireTime.subSet(from, true, to, true)) {
+            if (tag == null || tag.equals(entry.alarm.getTag())) {
+                return new AlarmModel(entry.alarm);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Active alarms ordered by fire time, only meaningful when the cache is complete.
+     */
+    synchronized ArrayList<AlarmModel> getActiveAlarms() {
+        ArrayList<AlarmModel> alarms = new ArrayList<>(byFireTime.size());
+        for (Entry entry : byFireTime) {
+            alarms.add(new AlarmModel(entry.alarm));
+        }
+        return alarms;
+    }
+
+    /**
+     * Page of active alarms with from <= fire time < to, optionally with the given tag only.
+     * Like {@link #getActiveAlarms()} this is only meaningful when the cache is complete.
+     */
+    synchronized ArrayList<AlarmModel> getActiveAlarms(long from, long to, String tag, int offset, int limit) {
+        ArrayList<AlarmModel> alarms = new ArrayList<>();
+        if (from >= to) {
+            return alarms;
+        }
+
+        Entry lower = new Entry(from, Integer.MIN_VALUE);
+        Entry upper = new Entry(to, Integer.MIN_VALUE);
+        int skip = offset;
+        for (Entry entry : byFireTime.subSet(lower, true, upper, false)) {
+            if (tag != null && !tag.equals(entry.alarm.getTag())) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (limit > 0 && alarms.size() >= limit) {
+                break;
+            }
+            alarms.add(new AlarmModel(entry.alarm));
+        }
+        return alarms;
+    }
+
+    synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Caches an alarm read from the database, unless the cache was written since the given
+     * {@link #getWriteCount()}. The alarm may have been updated or deleted meanwhile, the
+     * database is written before the cache.
+     */
+    synchronized void putIfUnchanged(AlarmModel alarm, long since) {
+        if (writeCount == since) {
+            put(alarm);
+        }
+    }
+
+    synchronized void put(AlarmModel alarm) {
+        remove(alarm.getId());
+        writeCount++;
+        if (alarm.getActive() != 1) {
+            return;
+        }
+        add(new Entry(new AlarmModel(alarm)));
+        trim();
+    }
+
+    synchronized void remove(int id) {
+        writeCount++;
+        Entry entry = byId.remove(id);
+        if (entry == null) {
+            return;
+        }
+        byFireTime.remove(entry);
+        if (byNotificationId.get(entry.notificationId) == entry) {
+            byNotificationId.remove(entry.notificationId);
+        }
+    }
+
+    synchronized int size() {
+        return byId.size();
+    }
+
+    private void add(Entry entry) {
+        byId.put(entry.id, entry);
+        byNotificationId.put(entry.notificationId, entry);
+        byFireTime.add(entry);
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Integer, Entry>> iterator = byId.entrySet().iterator();
+        while (byId.size() > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            byFireTime.remove(eldest);
+            if (byNotificationId.get(eldest.notificationId) == eldest) {
+                byNotificationId.remove(eldest.notificationId);
+            }
+            complete = false;
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.emekalites.react.alarm.notification;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Binary encoding of the persisted part of an AlarmModel (everything but id and active, which
+ * have their own columns).
+ *
+ * A record starts with its format version followed by the fields in a fixed order. Strings that
+ * are found in {@link #COMMON_STRINGS} are written as a one byte reference and decoded to the
+ * shared instance. Rows written before the binary format hold the Gson JSON of the model, those
+ * are read with {@link #decodeJson(String)}, which doesn't use reflection either.
+ */
+class AlarmCodec {
+
+    // 2: + recurrence rule (weekdays, month day, until, count) and occurrences
+    // 3: + time zone
+    // 4: + external key
+    // 5: + requested fire time
+    static final int VERSION = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // string markers, a marker >= STRING_COMMON is an index into COMMON_STRINGS
+    private static final int STRING_NULL = 0;
+    private static final int STRING_INLINE = 1;
+    private static final int STRING_COMMON = 2;
+
+    // defaults and enum-like values, only ever append to this list
+    private static final String[] COMMON_STRINGS = {
+            "",
+            "once",
+            "repeat",
+            "minutely",
+            "hourly",
+            "daily",
+            "weekly",
+            "my_channel_id",
+            "ic_launcher",
+            "red",
+            "My Notification Title",
+            "My Notification Message",
+            "monthly",
+            "yearly",
+    };
+
+    private static final int FLAG_AUTO_CANCEL = 1;
+    private static final int FLAG_VIBRATE = 1 << 1;
+    private static final int FLAG_PLAY_SOUND = 1 << 2;
+    private static final int FLAG_LOOP_SOUND = 1 << 3;
+    private static final int FLAG_USE_BIG_TEXT = 1 << 4;
+    private static final int FLAG_HAS_BUTTON = 1 << 5;
+    private static final int FLAG_BYPASS_DND = 1 << 6;
+    private static final int FLAG_MONTH_DAY_DERIVED = 1 << 7;
+
+    private AlarmCodec() {}
+
+    static byte[] encode(AlarmModel alarm) {
+        Writer out = new Writer(256);
+
+        out.writeVarInt(VERSION);
+        out.writeLong(alarm.getFireTime());
+        out.writeInt(alarm.getNotificationId());
+
+        int flags = (alarm.isAutoCancel() ? FLAG_AUTO_CANCEL : 0)
+                | (alarm.isVibrate() ? FLAG_VIBRATE : 0)
+                | (alarm.isPlaySound() ? FLAG_PLAY_SOUND : 0)
+                | (alarm.isLoopSound() ? FLAG_LOOP_SOUND : 0)
+                | (alarm.isUseBigText() ? FLAG_USE_BIG_TEXT : 0)
+                | (alarm.isHasButton() ? FLAG_HAS_BUTTON : 0)
+                | (alarm.isBypassDnd() ? FLAG_BYPASS_DND : 0)
+                | (alarm.isMonthDayDerived() ? FLAG_MONTH_DAY_DERIVED : 0);
+        out.writeVarInt(flags);
+
+        out.writeVarInt(alarm.getIntervalValue());
+        out.writeVarInt(alarm.getSnoozeInterval());
+        out.writeLong(Double.doubleToRawLongBits(alarm.getVolume()));
+
+        long[] pattern = alarm.getVibrationPattern();
+        if (pattern == null) {
+            out.writeVarInt(0);
+        } else {
+            out.writeVarInt(pattern.length + 1);
+            for (long value : pattern) {
+                out.writeLong(value);
+            }
+        }
+
+        out.writeString(alarm.getTitle());
+        out.writeString(alarm.getMessage());
+        out.writeString(alarm.getChannel());
+        out.writeString(alarm.getTicker());
+        out.writeString(alarm.getSmallIcon());
+        out.writeString(alarm.getLargeIcon());
+        out.writeString(alarm.getSoundName());
+        out.writeString(alarm.getSoundNames());
+        out.writeString(alarm.getColor());
+        out.writeString(alarm.getScheduleType());
+        out.writeString(alarm.getInterval());
+        out.writeString(alarm.getTag());
+        out.writeString(alarm.getData());
+
+        out.writeVarInt(alarm.getWeekdays());
+        out.writeVarInt(alarm.getMonthDay());
+        out.writeLong(alarm.getRepeatUntil());
+        out.writeVarInt(alarm.getRepeatCount());
+        out.writeVarInt(alarm.getOccurrences());
+
+        out.writeString(alarm.getTimeZone());
+
+        out.writeString(alarm.getExternalKey());
+
+        out.writeLong(alarm.getRequestedFireTime());
+
+        return out.toByteArray();
+    }
+
+    static AlarmModel decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+
+        int version = in.readVarInt();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported alarm record version " + version);
+        }
+
+        AlarmModel alarm = new AlarmModel();
+        alarm.setFireTime(in.readLong());
+        alarm.setNotificationId(in.readInt());
+
+        int flags = in.readVarInt();
+        alarm.setAutoCancel((flags & FLAG_AUTO_CANCEL) != 0);
+        alarm.setVibrate((flags & FLAG_VIBRATE) != 0);
+        alarm.setPlaySound((flags & FLAG_PLAY_SOUND) != 0);
+        alarm.setLoopSound((flags & FLAG_LOOP_SOUND) != 0);
+        alarm.setUseBigText((flags & FLAG_USE_BIG_TEXT) != 0);
+        alarm.setHasButton((flags & FLAG_HAS_BUTTON) != 0);
+        alarm.setBypassDnd((flags & FLAG_BYPASS_DND) != 0);
+        alarm.setMonthDayDerived((flags & FLAG_MONTH_DAY_DERIVED) != 0);
+
+        alarm.setIntervalValue(in.readVarInt());
+        alarm.setSnoozeInterval(in.readVarInt());
+        alarm.setVolume(Double.longBitsToDouble(in.readLong()));
+
+        int patternLength = in.readVarInt() - 1;
+        if (patternLength >= 0) {
+            long[] pattern = new long[patternLength];
+            for (int i = 0; i < patternLength; i++) {
+                pattern[i] = in.readLong();
+            }
+            alarm.setVibrationPattern(pattern);
+        }
+
+        alarm.setTitle(in.readString());
+        alarm.setMessage(in.readString());
+        alarm.setChannel(in.readString());
+        alarm.setTicker(in.readString());
+        alarm.setSmallIcon(in.readString());
+        alarm.setLargeIcon(in.readString());
+        alarm.setSoundName(in.readString());
+        alarm.setSoundNames(in.readString());
+        alarm.setColor(in.readString());
+        alarm.setScheduleType(in.readString());
+        alarm.setInterval(in.readString());
+        alarm.setTag(in.readString());
+        alarm.setData(in.readString());
+
+        if (version >= 2) {
+            alarm.setWeekdays(in.readVarInt());
+            alarm.setMonthDay(in.readVarInt());
+            alarm.setRepeatUntil(in.readLong());
+            alarm.setRepeatCount(in.readVarInt());
+            alarm.setOccurrences(in.readVarInt());
+        }
+
+        if (version >= 3) {
+            alarm.setTimeZone(in.readString());
+        }
+
+        if (version >= 4) {
+            alarm.setExternalKey(in.readString());
+        }
+
+        // earlier records don't know whether their fire time moved, it is taken as requested
+        alarm.setRequestedFireTime(version >= 5 ? in.readLong() : alarm.getFireTime());
+
+        return alarm;
+    }
+
+    /**
+     * Reads a row written before the binary format, i.e. the Gson JSON of the model.
+     */
+    static AlarmModel decodeJson(String json) throws IOException {
+        AlarmModel alarm = new AlarmModel();
+        // the wall clock time in the device's zone, as separate fields
+        int second = 0, minute = 0, hour = 0, day = 1, month = 1, year = 1970;
+
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                switch (name) {
+                    case "id":
+                        alarm.setId(reader.nextInt());
+                        break;
+                    case "second":
+                        second = reader.nextInt();
+                        break;
+                    case "minute":
+                        minute = reader.nextInt();
+                        break;
+                    case "hour":
+                        hour = reader.nextInt();
+                        break;
+                    case "day":
+                        day = reader.nextInt();
+                        break;
+                    case "month":
+                        month = reader.nextInt();
+                        break;
+                    case "year":
+                        year = reader.nextInt();
+                        break;
+                    case "notificationId":
+                        alarm.setNotificationId(reader.nextInt());
+                        break;
+                    case "title":
+                        alarm.setTitle(intern(reader.nextString()));
+                        break;
+                    case "message":
+                        alarm.setMessage(intern(reader.nextString()));
+                        break;
+                    case "channel":
+                        alarm.setChannel(intern(reader.nextString()));
+                        break;
+                    case "ticker":
+                        alarm.setTicker(intern(reader.nextString()));
+                        break;
+                    case "autoCancel":
+                        alarm.setAutoCancel(reader.nextBoolean());
+                        break;
+                    case "vibrate":
+                        alarm.setVibrate(reader.nextBoolean());
+                        break;
+                    case "vibrationPattern":
+                        alarm.setVibrationPattern(readLongArray(reader));
+                        break;
+                    case "smallIcon":
+                        alarm.setSmallIcon(intern(reader.nextString()));
+                        break;
+                    case "largeIcon":
+                        alarm.setLargeIcon(intern(reader.nextString()));
+                        break;
+                    case "playSound":
+                        alarm.setPlaySound(reader.nextBoolean());
+                        break;
+                    case "soundName":
+                        alarm.setSoundName(intern(reader.nextString()));
+                        break;
+                    case "soundNames":
+                        alarm.setSoundNames(intern(reader.nextString()));
+                        break;
+                    case "color":
+                        alarm.setColor(intern(reader.nextString()));
+                        break;
+                    case "scheduleType":
+                        alarm.setScheduleType(intern(reader.nextString()));
+                        break;
+                    case "interval":
+                        alarm.setInterval(intern(reader.nextString()));
+                        break;
+                    case "intervalValue":
+                        alarm.setIntervalValue(reader.nextInt());
+                        break;
+                    case "snoozeInterval":
+                        alarm.setSnoozeInterval(reader.nextInt());
+                        break;
+                    case "tag":
+                        alarm.setTag(intern(reader.nextString()));
+                        break;
+                    case "data":
+                        alarm.setData(reader.nextString());
+                        break;
+                    case "loopSound":
+                        alarm.setLoopSound(reader.nextBoolean());
+                        break;
+                    case "useBigText":
+                        alarm.setUseBigText(reader.nextBoolean());
+                        break;
+                    case "hasButton":
+                        alarm.setHasButton(reader.nextBoolean());
+                        break;
+                    case "volume":
+                        alarm.setVolume(reader.nextDouble());
+                        break;
+                    case "bypassDnd":
+                        alarm.setBypassDnd(reader.nextBoolean());
+                        break;
+                    case "active":
+                        alarm.setActive(reader.nextInt());
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+
+        Calendar calendar = new GregorianCalendar();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        alarm.setFireTime(calendar.getTimeInMillis());
+        alarm.setRequestedFireTime(alarm.getFireTime());
+
+        return alarm;
+    }
+
+    private static long[] readLongArray(JsonReader reader) throws IOException {
+        long[] values = new long[8];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = reader.nextLong();
+        }
+        reader.endArray();
+
+        return Arrays.copyOf(values, size);
+    }
+
+    private static int commonIndex(String value) {
+        for (int i = 0; i < COMMON_STRINGS.length; i++) {
+            if (COMMON_STRINGS[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String intern(String value) {
+        int index = commonIndex(value);
+        return index >= 0 ? COMMON_STRINGS[index] : value;
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        Writer(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(STRING_NULL);
+                return;
+            }
+
+            int index = commonIndex(value);
+            if (index >= 0) {
+                writeVarInt(STRING_COMMON + index);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarInt(STRING_INLINE);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        int readInt() {
+            return ((buffer[position++] & 0xFF) << 24)
+                    | ((buffer[position++] & 0xFF) << 16)
+                    | ((buffer[position++] & 0xFF) << 8)
+                    | (buffer[position++] & 0xFF);
+        }
+
+        long readLong() {
+            long high = readInt() & 0xFFFFFFFFL;
+            long low = readInt() & 0xFFFFFFFFL;
+            return (high << 32) | low;
+        }
+
+        String readString() {
+            int marker = readVarInt();
+            if (marker == STRING_NULL) {
+                return null;
+            }
+            if (marker >= STRING_COMMON) {
+                return COMMON_STRINGS[marker - STRING_COMMON];
+            }
+
+            int length = readVarInt();
+            String value = new String(buffer, position, length, UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+public class AlarmModel {
+    private static final String FIRE_DATE_SEPARATORS = "-- ::";
+
+    private int id;
+
+    private long fireTime; // epoch millis
+    private long requestedFireTime; // fire time last given by the app, before delivery or snoozing moved it
+    private String timeZone; // zone id of the wall clock time, null for the device's zone
+
+    private int notificationId;
+    private String title;
+    private String message;
+    private String channel;
+    private String ticker;
+    private boolean autoCancel;
+    private boolean vibrate;
+    private long[] vibrationPattern;
+    private String smallIcon;
+    private String largeIcon;
+    private boolean playSound;
+    private String soundName;
+    private String soundNames; // separate sounds with comma eg (sound1.mp3,sound2.mp3)
+    private String color;
+    private String scheduleType;
+    private String interval; // minutely, hourly, daily, weekly, monthly, yearly
+    private int intervalValue;
+    private int weekdays; // weekly, bit n for day n of the week with Sunday as 0
+    private int monthDay; // monthly and yearly, -1 for the last day
+    private boolean monthDayDerived; // monthDay was taken from the fire date, not given
+    private long repeatUntil; // epoch millis, 0 for no end
+    private int repeatCount; // 0 for no limit
+    private int occurrences; // occurrences delivered so far
+    private int snoozeInterval; // in minutes
+    private String tag;
+    private String externalKey; // caller's own id for the alarm, see AlarmSync
+    private String data;
+    private boolean loopSound;
+    private boolean useBigText;
+    private boolean hasButton;
+    private double volume;
+    private boolean bypassDnd;
+
+    private int active = 1; // 1 = yes, 0 = no
+    private boolean delivered; // notification posted, for once alarms
+
+    AlarmModel() {}
+
+    AlarmModel(AlarmModel other) {
+        this.id = other.id;
+        this.fireTime = other.fireTime;
+        this.requestedFireTime = other.requestedFireTime;
+        this.timeZone = other.timeZone;
+        this.notificationId = other.notificationId;
+        this.title = other.title;
+        this.message = other.message;
+        this.channel = other.channel;
+        this.ticker = other.ticker;
+        this.autoCancel = other.autoCancel;
+        this.vibrate = other.vibrate;
+        this.vibrationPattern = other.vibrationPattern != null ? other.vibrationPattern.clone() : null;
+        this.smallIcon = other.smallIcon;
+        this.largeIcon = other.largeIcon;
+        this.playSound = other.playSound;
+        this.soundName = other.soundName;
+        this.soundNames = other.soundNames;
+        this.color = other.color;
+        this.scheduleType = other.scheduleType;
+        this.interval = other.interval;
+        this.intervalValue = other.intervalValue;
+        this.weekdays = other.weekdays;
+        this.monthDay = other.monthDay;
+        this.monthDayDerived = other.monthDayDerived;
+        this.repeatUntil = other.repeatUntil;
+        this.repeatCount = other.repeatCount;
+        this.occurrences = other.occurrences;
+        this.snoozeInterval = other.snoozeInterval;
+        this.tag = other.tag;
+        this.externalKey = other.externalKey;
+        this.data = other.data;
+        this.loopSound = other.loopSound;
+        this.useBigText = other.useBigText;
+        this.hasButton = other.hasButton;
+        this.volume = other.volume;
+        this.bypassDnd = other.bypassDnd;
+        this.active = other.active;
+        this.delivered = other.delivered;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public long getFireTime() {
+        return fireTime;
+    }
+
+    public void setFireTime(long fireTime) {
+        this.fireTime = fireTime;
+    }
+
+    public long getRequestedFireTime() {
+        return requestedFireTime;
+    }
+
+    public void setRequestedFireTime(long requestedFireTime) {
+        this.requestedFireTime = requestedFireTime;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public int getNotificationId() {
+        return notificationId;
+    }
+
+    public void setNotificationId(int notificationId) {
+        this.notificationId = notificationId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    public void setTicker(String ticker) {
+        this.ticker = ticker;
+    }
+
+    public boolean isAutoCancel() {
+        return autoCancel;
+    }
+
+    public void setAutoCancel(boolean autoCancel) {
+        this.autoCancel = autoCancel;
+    }
+
+    public boolean isVibrate() {
+        return vibrate;
+    }
+
+    public void setVibrate(boolean vibrate) {
+        this.vibrate = vibrate;
+    }
+
+    public long[] getVibrationPattern() {
+        return vibrationPattern;
+    }
+
+    public void setVibrationPattern(long[] vibrationPattern) {
+        this.vibrationPattern = vibrationPattern;
+    }
+
+    public String getSmallIcon() {
+        return smallIcon;
+    }
+
+    public void setSmallIcon(String smallIcon) {
+        this.smallIcon = smallIcon;
+    }
+
+    public String getLargeIcon() {
+        return largeIcon;
+    }
+
+    public void setLargeIcon(String largeIcon) {
+        this.largeIcon = largeIcon;
+    }
+
+    public boolean isPlaySound() {
+        return playSound;
+    }
+
+    public void setPlaySound(boolean playSound) {
+        this.playSound = playSound;
+    }
+
+    public String getSoundName() {
+        return soundName;
+    }
+
+    public void setSoundName(String soundName) {
+        this.soundName = soundName;
+    }
+
+    public String getSoundNames() {
+        return soundNames;
+    }
+
+    public void setSoundNames(String soundNames) {
+        this.soundNames = soundNames;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public String getScheduleType() {
+        return scheduleType;
+    }
+
+    public void setScheduleType(String scheduleType) {
+        this.scheduleType = scheduleType;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public void setInterval(String interval) {
+        this.interval = interval;
+    }
+
+    public int getIntervalValue() {
+        return intervalValue;
+    }
+
+    public void setIntervalValue(int intervalValue) {
+        this.intervalValue = intervalValue;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    public String getExternalKey() {
+        return externalKey;
+    }
+
+    public void setExternalKey(String externalKey) {
+        this.externalKey = externalKey;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public void setActive(int active) {
+        this.active = active;
+    }
+
+    public boolean isDelivered() {
+        return delivered;
+    }
+
+    public void setDelivered(boolean delivered) {
+        this.delivered = delivered;
+    }
+
+    public int getWeekdays() {
+        return weekdays;
+    }
+
+    public void setWeekdays(int weekdays) {
+        this.weekdays = weekdays;
+    }
+
+    public int getMonthDay() {
+        return monthDay;
+    }
+
+    public void setMonthDay(int monthDay) {
+        this.monthDay = monthDay;
+    }
+
+    public boolean isMonthDayDerived() {
+        return monthDayDerived;
+    }
+
+    public void setMonthDayDerived(boolean monthDayDerived) {
+        this.monthDayDerived = monthDayDerived;
+    }
+
+    public long getRepeatUntil() {
+        return repeatUntil;
+    }
+
+    public void setRepeatUntil(long repeatUntil) {
+        this.repeatUntil = repeatUntil;
+    }
+
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    public void setRepeatCount(int repeatCount) {
+        this.repeatCount = repeatCount;
+    }
+
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    public void setOccurrences(int occurrences) {
+        this.occurrences = occurrences;
+    }
+
+    public int getSnoozeInterval() {
+        return snoozeInterval;
+    }
+
+    public void setSnoozeInterval(int snoozeInterval) {
+        this.snoozeInterval = snoozeInterval;
+    }
+
+    public boolean isLoopSound() {
+        return loopSound;
+    }
+
+    public void setLoopSound(boolean loopSound) {
+        this.loopSound = loopSound;
+    }
+
+    public boolean isUseBigText() {
+        return useBigText;
+    }
+
+    public void setUseBigText(boolean useBigText) {
+        this.useBigText = useBigText;
+    }
+
+    public boolean isHasButton() {
+        return hasButton;
+    }
+
+    public void setHasButton(boolean hasButton) {
+        this.hasButton = hasButton;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+
+    public void setVolume(double volume) {
+        if (volume > 1 || volume < 0) {
+            this.volume = 0.5;
+        } else {
+            this.volume = volume;
+        }
+    }
+
+    public boolean isBypassDnd() {
+        return bypassDnd;
+    }
+
+    public void setBypassDnd(boolean bypassDnd) {
+        this.bypassDnd = bypassDnd;
+    }
+
+    @Override
+    public String toString() {
+        return "AlarmModel{" +
+                "id=" + id +
+                ", fireTime=" + fireTime +
+                ", requestedFireTime=" + requestedFireTime +
+                ", timeZone='" + timeZone + "\'" +
+                ", notificationId=" + notificationId +
+                ", title='" + title + "\'" +
+                ", message='" + message + "\'" +
+                ", channel='" + channel + "\'" +
+                ", ticker='" + ticker + "\'" +
+                ", autoCancel=" + autoCancel +
+                ", vibrate=" + vibrate +
+                ", vibrationPattern=" + Arrays.toString(vibrationPattern) +
+                ", smallIcon='" + smallIcon + "\'" +
+                ", largeIcon='" + largeIcon + "\'" +
+                ", playSound=" + playSound +
+                ", soundName='" + soundName + "\'" +
+                ", soundNames='" + soundNames + "\'" +
+                ", color='" + color + "\'" +
+                ", scheduleType='" + scheduleType + "\'" +
+                ", interval=" + interval +
+                ", intervalValue=" + intervalValue +
+                ", weekdays=" + weekdays +
+                ", monthDay=" + monthDay +
+                ", monthDayDerived=" + monthDayDerived +
+                ", repeatUntil=" + repeatUntil +
+                ", repeatCount=" + repeatCount +
+                ", occurrences=" + occurrences +
+                ", snoozeInterval=" + snoozeInterval +
+                ", tag='" + tag + "\'" +
+                ", externalKey='" + externalKey + "\'" +
+                ", data='" + data + "\'" +
+                ", loopSound=" + loopSound +
+                ", useBigText=" + useBigText +
+                ", hasButton=" + hasButton +
+                ", volume=" + volume +
+                ", bypassDnd=" + bypassDnd +
+                ", active=" + active +
+                ", delivered=" + delivered +
+                '}';
+    }
+
+    /**
+     * Parses a dd-MM-yyyy HH:mm:ss wall clock time in the given zone. Fields may have any number
+     * of digits and out of range values roll over, as with a lenient SimpleDateFormat.
+     */
+    static long parseFireDate(String value, TimeZone zone) {
+        int[] fields = new int[6]; // day, month, year, hour, minute, second
+        int field = 0;
+        boolean digits = false;
+        String text = value.trim();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                fields[field] = fields[field] * 10 + (c - '0');
+                digits = true;
+            } else if (digits && field < 5 && c == FIRE_DATE_SEPARATORS.charAt(field)) {
+                field++;
+                digits = false;
+            } else {
+                throw new IllegalArgumentException("Invalid fire date, expected dd-MM-yyyy HH:mm:ss: " + value);
+            }
+        }
+        if (field != 5 || !digits) {
+            throw new IllegalArgumentException("Invalid fire date, expected dd-MM-yyyy HH:mm:ss: " + value);
+        }
+
+        Calendar calendar = new GregorianCalendar(zone);
+        calendar.clear();
+        calendar.set(fields[2], fields[1] - 1, fields[0], fields[3], fields[4], fields[5]);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Zone of the alarm's wall clock time, used for calendar based recurrences.
+     */
+    TimeZone getZone() {
+        return timeZone != null ? TimeZone.getTimeZone(timeZone) : TimeZone.getDefault();
+    }
+
+    /**
+     * Fire time as calendar fields in the alarm's zone, for display and serialization.
+     */
+    Calendar getAlarmDateTime() {
+        Calendar calendar = new GregorianCalendar(getZone());
+        calendar.setTimeInMillis(fireTime);
+        return calendar;
+    }
+
+    void snooze() {
+        fireTime += getSnoozeInterval() * 60 * 1000L;
+    }
+
+    boolean isSameTime(AlarmModel alarm) {
+        return fireTime == alarm.fireTime;
+    }
+
+    // fire time and everything its next occurrences depend on
+    boolean isSameSchedule(AlarmModel alarm) {
+        return fireTime == alarm.fireTime
+                && equals(timeZone, alarm.timeZone)
+                && equals(scheduleType, alarm.scheduleType)
+                && equals(interval, alarm.interval)
+                && intervalValue == alarm.intervalValue
+                && weekdays == alarm.weekdays
+                && monthDay == alarm.monthDay
+                && repeatUntil == alarm.repeatUntil
+                && repeatCount == alarm.repeatCount;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
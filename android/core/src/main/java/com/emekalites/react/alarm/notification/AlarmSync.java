@@ -0,0 +1,99 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Difference between the alarms an app wants scheduled, identified by their external keys, and
+ * the active alarms that have one. Alarms without an external key are left alone.
+ *
+ * A desired alarm takes over the id, notification id and delivered occurrences of the alarm
+ * with its key, so an unchanged alarm encodes to the same record. Repeating alarms move their
+ * fire time forward as they are delivered and snoozed alarms as they are snoozed, the fire time
+ * they have moved to is kept when an app passes the requested one again, any other fire time
+ * is a change. A repeating alarm
+ * starting in the past is moved to the rule's next occurrence, once alarms in the past that no
+ * longer exist, e.g. dismissed, aren't scheduled again.
+ */
+class AlarmSync {
+
+    final ArrayList<AlarmModel> inserts = new ArrayList<>();
+    final ArrayList<AlarmModel> updates = new ArrayList<>();
+    final ArrayList<AlarmModel> deletes = new ArrayList<>();
+    int unchanged;
+    int expired;
+
+    static AlarmSync diff(List<AlarmModel> existing, List<AlarmModel> desired, long now) {
+        AlarmSync sync = new AlarmSync();
+
+        LinkedHashMap<String, AlarmModel> byKey = new LinkedHashMap<>(existing.size() * 2);
+        for (AlarmModel alarm : existing) {
+            AlarmModel previous = byKey.put(alarm.getExternalKey(), alarm);
+            if (previous != null) {
+                // only one alarm per key is kept
+                sync.deletes.add(previous);
+            }
+        }
+
+        HashSet<String> keys = new HashSet<>(desired.size() * 2);
+        for (AlarmModel alarm : desired) {
+            String key = alarm.getExternalKey();
+            if (key == null || key.isEmpty()) {
+                throw new IllegalArgumentException("external_key is required");
+            }
+            if (!keys.add(key)) {
+                throw new IllegalArgumentException("Duplicate external_key " + key);
+            }
+
+            AlarmModel current = byKey.remove(key);
+            if (current == null) {
+                if (isPending(alarm, now)) {
+                    sync.inserts.add(alarm);
+                } else {
+                    sync.expired++;
+                }
+                continue;
+            }
+
+            alarm.setId(current.getId());
+            alarm.setNotificationId(current.getNotificationId());
+            alarm.setOccurrences(current.getOccurrences());
+            alarm.setActive(current.getActive());
+
+            if (alarm.getFireTime() == current.getRequestedFireTime()) {
+                alarm.setFireTime(current.getFireTime());
+            }
+
+            if (Arrays.equals(AlarmCodec.encode(alarm), AlarmCodec.encode(current))) {
+                sync.unchanged++;
+                continue;
+            }
+
+            if (!isPending(alarm, now)) {
+                alarm.setDelivered(true);
+            } else {
+                // a new fire time is pending again, otherwise the delivered state is kept
+                alarm.setDelivered(alarm.getFireTime() == current.getFireTime() && current.isDelivered());
+            }
+            sync.updates.add(alarm);
+        }
+
+        sync.deletes.addAll(byKey.values());
+        return sync;
+    }
+
+    // whether the alarm still has an occurrence to fire, a repeating one is moved to its next occurrence
+    private static boolean isPending(AlarmModel alarm, long now) {
+        if ("repeat".equals(alarm.getScheduleType())) {
+            return Recurrence.catchUp(alarm, now);
+        }
+        return alarm.getFireTime() > now;
+    }
+
+    boolean isEmpty() {
+        return inserts.isEmpty() && updates.isEmpty() && deletes.isEmpty();
+    }
+}
@@ -0,0 +1,134 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, for diagnostics.
+ *
+ * Values below 8 get a bucket each, above that every power of two is split into 8 buckets, so
+ * a percentile is off by at most 12.5% and the whole range of long fits in 488 counters.
+ * Recording is a few atomic operations and doesn't allocate.
+ */
+class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - 1 - (SUB_BUCKET_BITS - 1)) * SUB_BUCKETS;
+
+    private final TimeUnit unit;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param unit unit of the recorded values
+     */
+    Histogram(TimeUnit unit) {
+        this.unit = unit;
+    }
+
+    TimeUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Records a value in the unit of the histogram, negative values count as 0.
+     */
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        sum.addAndGet(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since a System.nanoTime() reading.
+     */
+    void recordSince(long startNanos) {
+        record(unit.convert(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS));
+    }
+
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        // sum and max may be a little ahead of the buckets copied while recording goes on
+        return new Snapshot(copy, total, sum.get(), max.get());
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // largest value that falls in the bucket
+    static long bucketMax(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+
+    static class Snapshot {
+        private final long[] counts;
+        final long count;
+        final long sum;
+        final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        double mean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile (0 to 100), 0 when empty.
+         */
+        long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketMax(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out increasing ids that stay unique across process restarts, e.g. notification ids,
+ * which are also the request codes of the alarms' PendingIntents.
+ *
+ * Ids are taken from an AtomicInteger without locking. Only when an id reaches the end of the
+ * reserved block is a new block reserved, the end of which is persisted before any of its ids
+ * is handed out. After a restart allocation resumes at the persisted end, the ids not handed
+ * out from the last block are skipped. Past Integer.MAX_VALUE ids start over at 1.
+ */
+class IdAllocator {
+
+    interface Reservation {
+        /**
+         * Persists that ids below limit may have been handed out. Called with increasing
+         * limits, or 1 + block after starting over.
+         */
+        void reserve(int limit);
+    }
+
+    static final int FIRST_ID = 1;
+    static final int DEFAULT_BLOCK = 256;
+
+    private final AtomicInteger next;
+    private final Reservation reservation;
+    private final int block;
+
+    // ids below limit are reserved, only raised once the reservation is persisted
+    private volatile int limit;
+
+    /**
+     * @param start first id to hand out, the persisted limit of the last reservation
+     */
+    IdAllocator(int start, int block, Reservation reservation) {
+        this.next = new AtomicInteger(Math.max(start, FIRST_ID));
+        this.limit = this.next.get();
+        this.block = block;
+        this.reservation = reservation;
+    }
+
+    int next() {
+        int id = next.getAndIncrement();
+        if (id >= FIRST_ID && id < limit) {
+            return id;
+        }
+        return reserve(id);
+    }
+
+    private synchronized int reserve(int id) {
+        while (id < FIRST_ID || id > Integer.MAX_VALUE - block) {
+            // out of ids, the first thread here starts over, the others take ids of the new round
+            int current = next.get();
+            if (current >= FIRST_ID && current <= Integer.MAX_VALUE - block) {
+                id = next.getAndIncrement();
+            } else {
+                // lowered first, so that no id of the new round passes as reserved
+                limit = FIRST_ID;
+                if (next.compareAndSet(current, FIRST_ID + 1)) {
+                    id = FIRST_ID;
+                }
+            }
+        }
+        if (id >= limit) {
+            int newLimit = id + block;
+            reservation.reserve(newLimit);
+            limit = newLimit;
+        }
+        return id;
+    }
+}
@@ -0,0 +1,59 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing histograms of the current process, reported to JS by getDiagnostics().
+ */
+final class Metrics {
+
+    // broadcast received vs. the alarm's fire time
+    static final Histogram FIRE_DELAY = new Histogram(TimeUnit.MILLISECONDS);
+    // notification posted vs. the alarm's fire time
+    static final Histogram DELIVERY_DELAY = new Histogram(TimeUnit.MILLISECONDS);
+    // work of a receiver, from queueing to done
+    static final Histogram RECEIVER = new Histogram(TimeUnit.MILLISECONDS);
+
+    static final Histogram NOTIFICATION_BUILD = new Histogram(TimeUnit.MICROSECONDS);
+    static final Histogram NOTIFICATION_POST = new Histogram(TimeUnit.MICROSECONDS);
+
+    static final Histogram DB_READ = new Histogram(TimeUnit.MICROSECONDS);
+    static final Histogram DB_WRITE = new Histogram(TimeUnit.MICROSECONDS);
+
+    static final Histogram SET_ALARM = new Histogram(TimeUnit.MICROSECONDS);
+
+    // since when the histograms have been recording
+    private static volatile long since = System.currentTimeMillis();
+
+    private static final Map<String, Histogram> ALL = new LinkedHashMap<>();
+
+    static {
+        ALL.put("fireDelay", FIRE_DELAY);
+        ALL.put("deliveryDelay", DELIVERY_DELAY);
+        ALL.put("receiver", RECEIVER);
+        ALL.put("notificationBuild", NOTIFICATION_BUILD);
+        ALL.put("notificationPost", NOTIFICATION_POST);
+        ALL.put("dbRead", DB_READ);
+        ALL.put("dbWrite", DB_WRITE);
+        ALL.put("setAlarm", SET_ALARM);
+    }
+
+    private Metrics() {}
+
+    static Map<String, Histogram> all() {
+        return ALL;
+    }
+
+    static long since() {
+        return since;
+    }
+
+    static void reset() {
+        for (Histogram histogram : ALL.values()) {
+            histogram.reset();
+        }
+        since = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,219 @@
+package com.emekalites.react.alarm.notification;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Recurrence rule of a repeating alarm and computation of its occurrences.
+ *
+ * An alarm repeats every N minutes, hours, days, weeks, months or years. Weekly alarms can
+ * fire on several days of the week, monthly alarms on a given day of the month (-1 for the last
+ * day, days past the end of a shorter month fall on its last day). A rule may end at a date or
+ * after a number of delivered occurrences, occurrences missed while the device was off are
+ * skipped and don't count.
+ *
+ * Occurrences are computed from the current one, which carries the time of day and, for
+ * alarms repeating every few weeks, which weeks are included. Calendar fields of the alarm's
+ * zone are used for days and longer, so alarms keep their wall clock time across DST changes.
+ */
+class Recurrence {
+
+    static final String MINUTELY = "minutely";
+    static final String HOURLY = "hourly";
+    static final String DAILY = "daily";
+    static final String WEEKLY = "weekly";
+    static final String MONTHLY = "monthly";
+    static final String YEARLY = "yearly";
+
+    static final int LAST_DAY_OF_MONTH = -1;
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private final String interval;
+    private final int every;
+    private final int weekdays;
+    private final int monthDay;
+    private final long until;
+    private final int count;
+    private final TimeZone zone;
+
+    /**
+     * @param interval one of minutely, hourly, daily, weekly, monthly or yearly
+     * @param every    repeat every this many intervals, at least 1
+     * @param weekdays weekly only, bit n set for day n of the week with Sunday as 0, or 0 for
+     *                 the day of the week of the current occurrence
+     * @param monthDay monthly and yearly only, day of the month, {@link #LAST_DAY_OF_MONTH} or
+     *                 0 for the day of the current occurrence
+     * @param until    no occurrences after this time in epoch millis, 0 for no end date
+     * @param count    number of occurrences delivered before the rule ends, 0 for no limit
+     * @param zone     zone of the wall clock time
+     */
+    Recurrence(String interval, int every, int weekdays, int monthDay, long until, int count, TimeZone zone) {
+        this.interval = interval != null ? interval : HOURLY;
+        this.every = Math.max(1, every);
+        this.weekdays = weekdays & 0x7F;
+        this.monthDay = monthDay;
+        this.until = until;
+        this.count = count;
+        this.zone = zone;
+    }
+
+    static Recurrence of(AlarmModel alarm) {
+        return new Recurrence(alarm.getInterval(), alarm.getIntervalValue(), alarm.getWeekdays(),
+                alarm.getMonthDay(), alarm.getRepeatUntil(), alarm.getRepeatCount(), alarm.getZone());
+    }
+
+    /**
+     * Moves a repeating alarm whose fire time has passed to its next occurrence after now.
+     * Returns false when its rule has ended, true for alarms that are still to fire.
+     */
+    static boolean catchUp(AlarmModel alarm, long now) {
+        if (!"repeat".equals(alarm.getScheduleType()) || alarm.getFireTime() > now) {
+            return true;
+        }
+        long next = of(alarm).next(alarm.getFireTime(), alarm.getOccurrences(), now);
+        if (next < 0) {
+            return false;
+        }
+        alarm.setFireTime(next);
+        return true;
+    }
+
+    static boolean isSupported(String interval) {
+        return MINUTELY.equals(interval) || HOURLY.equals(interval) || DAILY.equals(interval)
+                || WEEKLY.equals(interval) || MONTHLY.equals(interval) || YEARLY.equals(interval);
+    }
+
+    /**
+     * First occurrence after the given time that follows the current one.
+     *
+     * @param current     time of the current occurrence, in epoch millis
+     * @param occurrences number of occurrences up to and including the current one
+     * @param after       the result is later than this, usually now
+     * @return the next occurrence, or -1 when the rule has ended
+     */
+    long next(long current, int occurrences, long after) {
+        if (count > 0 && occurrences >= count) {
+            return -1;
+        }
+
+        long next;
+        switch (interval) {
+            case MINUTELY:
+                next = nextFixed(current, every * MINUTE, after);
+                break;
+
+            case HOURLY:
+                next = nextFixed(current, every * HOUR, after);
+                break;
+
+            case DAILY:
+                next = nextDaily(current, after);
+                break;
+
+            case WEEKLY:
+                next = nextWeekly(current, after);
+                break;
+
+            case MONTHLY:
+                next = nextMonthly(current, after, 1);
+                break;
+
+            case YEARLY:
+                next = nextMonthly(current, after, 12);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported repeat interval: " + interval);
+        }
+
+        if (until > 0 && next > until) {
+            return -1;
+        }
+        return next;
+    }
+
+    private static long nextFixed(long current, long step, long after) {
+        if (current > after) {
+            return current + step;
+        }
+        return current + ((after - current) / step + 1) * step;
+    }
+
+    private long nextDaily(long current, long after) {
+        Calendar calendar = calendarAt(current);
+        if (after > current) {
+            // jump to a cycle before the target, a DST change can make the estimate one day long
+            long cycles = (after - current) / (every * 24 * HOUR) - 1;
+            if (cycles > 0) {
+                calendar.add(Calendar.DAY_OF_MONTH, (int) (cycles * every));
+            }
+        }
+        do {
+            calendar.add(Calendar.DAY_OF_MONTH, every);
+        } while (calendar.getTimeInMillis() <= after);
+        return calendar.getTimeInMillis();
+    }
+
+    private long nextWeekly(long current, long after) {
+        Calendar weekStart = calendarAt(current);
+        int mask = weekdays != 0 ? weekdays : 1 << (weekStart.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY);
+
+        // weeks start on Sunday, the week of the current occurrence is the first one of a cycle
+        weekStart.add(Calendar.DAY_OF_MONTH, Calendar.SUNDAY - weekStart.get(Calendar.DAY_OF_WEEK));
+        if (after > current) {
+            long cycles = (after - current) / (every * 7 * 24 * HOUR) - 1;
+            if (cycles > 0) {
+                weekStart.add(Calendar.DAY_OF_MONTH, (int) (cycles * every * 7));
+            }
+        }
+
+        long floor = Math.max(current, after);
+        // four cycles from there always contain an occurrence after floor
+        for (int cycle = 0; cycle < 4; cycle++) {
+            Calendar day = (Calendar) weekStart.clone();
+            day.add(Calendar.DAY_OF_MONTH, cycle * every * 7);
+            for (int i = 0; i < 7; i++) {
+                if ((mask & (1 << i)) != 0 && day.getTimeInMillis() > floor) {
+                    return day.getTimeInMillis();
+                }
+                day.add(Calendar.DAY_OF_MONTH, 1);
+            }
+        }
+        throw new IllegalStateException("No weekly occurrence found");
+    }
+
+    private long nextMonthly(long current, long after, int months) {
+        Calendar start = calendarAt(current);
+        int day = monthDay != 0 ? monthDay : start.get(Calendar.DAY_OF_MONTH);
+        int step = every * months;
+
+        int index = 1;
+        if (after > current) {
+            Calendar target = calendarAt(after);
+            int monthsBetween = (target.get(Calendar.YEAR) - start.get(Calendar.YEAR)) * 12
+                    + target.get(Calendar.MONTH) - start.get(Calendar.MONTH);
+            index = Math.max(1, monthsBetween / step);
+        }
+
+        while (true) {
+            Calendar calendar = calendarAt(current);
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+            calendar.add(Calendar.MONTH, index * step);
+            int lastDay = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+            calendar.set(Calendar.DAY_OF_MONTH, day == LAST_DAY_OF_MONTH ? lastDay : Math.min(day, lastDay));
+            if (calendar.getTimeInMillis() > after && calendar.getTimeInMillis() > current) {
+                return calendar.getTimeInMillis();
+            }
+            index++;
+        }
+    }
+
+    private Calendar calendarAt(long time) {
+        Calendar calendar = new GregorianCalendar(zone);
+        calendar.setTimeInMillis(time);
+        return calendar;
+    }
+}
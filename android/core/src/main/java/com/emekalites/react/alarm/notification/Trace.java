@@ -0,0 +1,124 @@
+package com.emekalites.react.alarm.notification;
+
+/**
+ * Fixed-size ring buffer of scheduler events, dumped on demand for bug reports.
+ *
+ * Entries are kept in parallel primitive arrays, so recording an event doesn't allocate or
+ * format anything. Once the buffer is full the oldest entries are overwritten.
+ */
+final class Trace {
+
+    static final String LEVEL_OFF = "off";
+    static final String LEVEL_EVENTS = "events";
+    static final String LEVEL_VERBOSE = "verbose";
+
+    // event types, with what the two values of an entry hold
+    static final int SCHEDULE = 0;   // alarm id, fire time
+    static final int FIRE = 1;       // alarm id, delay after the fire time in ms
+    static final int DELIVER = 2;    // alarm id, notification id
+    static final int SNOOZE = 3;     // alarm id, new fire time
+    static final int DISMISS = 4;    // alarm id, notification id
+    static final int CANCEL = 5;     // alarm id, notification id
+    static final int REARM = 6;      // alarm id, next fire time or -1 when the recurrence ended
+    static final int BOOT_REARM = 7; // number of pending alarms, number of missed alarms
+    static final int WAKEUP = 8;     // verbose: 0, time the single wakeup is armed for
+    static final int STORE = 9;      // verbose: alarm id, fire time
+    static final int UPDATE = 10;    // alarm id, fire time
+
+    private static final String[] NAMES = {
+            "schedule", "fire", "deliver", "snooze", "dismiss", "cancel", "rearm", "boot_rearm", "wakeup", "store", "update",
+    };
+
+    private static final int OFF = 0;
+    private static final int EVENTS = 1;
+    private static final int VERBOSE = 2;
+
+    // level from which each event type is recorded
+    private static final int[] LEVELS = {
+            EVENTS, EVENTS, EVENTS, EVENTS, EVENTS, EVENTS, EVENTS, EVENTS, VERBOSE, VERBOSE, EVENTS,
+    };
+
+    private static final int CAPACITY = 512;
+
+    private static final long[] times = new long[CAPACITY];
+    private static final int[] types = new int[CAPACITY];
+    private static final int[] ids = new int[CAPACITY];
+    private static final long[] values = new long[CAPACITY];
+
+    // number of entries ever recorded, the next one goes to next % CAPACITY
+    private static long next;
+
+    private static volatile int level = EVENTS;
+
+    private Trace() {}
+
+    /**
+     * @param name one of off, events or verbose
+     */
+    static void setLevel(String name) {
+        level = parseLevel(name);
+    }
+
+    static boolean isLevel(String name) {
+        return LEVEL_OFF.equals(name) || LEVEL_EVENTS.equals(name) || LEVEL_VERBOSE.equals(name);
+    }
+
+    private static int parseLevel(String name) {
+        if (LEVEL_OFF.equals(name)) {
+            return OFF;
+        }
+        if (LEVEL_VERBOSE.equals(name)) {
+            return VERBOSE;
+        }
+        return EVENTS;
+    }
+
+    static void record(int type, int id, long value) {
+        if (LEVELS[type] > level) {
+            return;
+        }
+        long time = System.currentTimeMillis();
+        synchronized (times) {
+            int index = (int) (next++ % CAPACITY);
+            times[index] = time;
+            types[index] = type;
+            ids[index] = id;
+            values[index] = value;
+        }
+    }
+
+    interface Visitor {
+        void visit(long time, String event, int id, long value);
+    }
+
+    /**
+     * Visits the recorded events from the oldest to the newest.
+     *
+     * @param clear start over once the events have been copied
+     */
+    static void dump(Visitor visitor, boolean clear) {
+        int count;
+        long[] timesCopy = new long[CAPACITY];
+        int[] typesCopy = new int[CAPACITY];
+        int[] idsCopy = new int[CAPACITY];
+        long[] valuesCopy = new long[CAPACITY];
+        long first;
+        synchronized (times) {
+            count = (int) Math.min(next, CAPACITY);
+            first = next - count;
+            System.arraycopy(times, 0, timesCopy, 0, CAPACITY);
+            System.arraycopy(types, 0, typesCopy, 0, CAPACITY);
+            System.arraycopy(ids, 0, idsCopy, 0, CAPACITY);
+            System.arraycopy(values, 0, valuesCopy, 0, CAPACITY);
+            if (clear) {
+                next = 0;
+            }
+        }
+
+        // visited outside the lock, recording goes on meanwhile
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((first + i) % CAPACITY);
+            visitor.visit(timesCopy[index], NAMES[typesCopy[index]], idsCopy[index], valuesCopy[index]);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.emekalites.react.alarm.notification;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AlarmSyncTest {
+
+    private static final long NOW = 1800000000000L;
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private static AlarmModel alarm(String key, long fireTime) {
+        AlarmModel alarm = new AlarmModel();
+        alarm.setId(1);
+        alarm.setNotificationId(100);
+        alarm.setExternalKey(key);
+        alarm.setFireTime(fireTime);
+        alarm.setRequestedFireTime(fireTime);
+        alarm.setTitle("Title");
+        alarm.setMessage("Message");
+        alarm.setChannel("channel");
+        alarm.setScheduleType("once");
+        alarm.setSnoozeInterval(1);
+        alarm.setIntervalValue(1);
+        alarm.setActive(1);
+        return alarm;
+    }
+
+    private static AlarmModel repeatDaily(AlarmModel alarm) {
+        alarm.setScheduleType("repeat");
+        alarm.setInterval(Recurrence.DAILY);
+        return alarm;
+    }
+
+    @Test
+    public void onceAlarmMovedIntoThePastIsDelivered() {
+        AlarmModel current = alarm("note-1", NOW + HOUR);
+        AlarmModel desired = alarm("note-1", NOW - HOUR);
+
+        AlarmSync sync = AlarmSync.diff(Collections.singletonList(current), Collections.singletonList(desired), NOW);
+
+        assertEquals(1, sync.updates.size());
+        assertTrue(sync.updates.get(0).isDelivered());
+        assertEquals(NOW - HOUR, sync.updates.get(0).getFireTime());
+    }
+
+    @Test
+    public void onceAlarmMovedIntoTheFutureIsPending() {
+        AlarmModel current = alarm("note-1", NOW + HOUR);
+        AlarmModel desired = alarm("note-1", NOW + 2 * HOUR);
+
+        AlarmSync sync = AlarmSync.diff(Collections.singletonList(current), Collections.singletonList(desired), NOW);
+
+        assertEquals(1, sync.updates.size());
+        assertFalse(sync.updates.get(0).isDelivered());
+    }
+
+    @Test
+    public void onceAlarmMovedByWholeMinutesIsUpdated() {
+        AlarmModel current = alarm("note-1", NOW + 3 * HOUR);
+        AlarmModel desired = alarm("note-1", NOW + HOUR);
+
+        AlarmSync sync = AlarmSync.diff(Collections.singletonList(current), Collections.singletonList(desired), NOW);
+
+        assertEquals(0, sync.unchanged);
+        assertEquals(1, sync.updates.size());
+        assertEquals(NOW + HOUR, sync.updates.get(0).getFireTime());
+    }
+
+    @Test
+    public void snoozedAlarmSyncedWithItsRequestedTimeIsUnchanged() {
+        AlarmModel current = alarm("note-1", NOW - MINUTE);
+        current.snooze();
+        current.snooze();
+        AlarmModel desired = alarm("note-1", NOW - MINUTE);
+
+        AlarmSync sync = AlarmSync.diff(Collections.singletonList(current), Collections.singletonList(desired), NOW);
+
+        assertEquals(1, sync.unchanged);
+        assertTrue(sync.updates.isEmpty());
+    }
+
+    @Test
+    public void deliveredRepeatSyncedWithItsRequestedTimeIsUnchanged() {
+        AlarmModel current = repeatDaily(alarm("note-1", NOW - DAY));
+        current.setFireTime(NOW + HOUR);
+        current.setOccurrences(1);
+        AlarmModel desired = repeatDaily(alarm("note-1", NOW - DAY));
+
+        AlarmSync sync = AlarmSync.diff(Collections.singletonList(current), Collections.singletonList(desired), NOW);
+
+        assertEquals(1, sync.unchanged);
+    }
+
+    @Test
+    public void repeatMovedToItsCurrentFireTimeIsUpdated() {
+        AlarmModel current = repeatDaily(alarm("note-1", NOW - DAY));
+        current.setFireTime(NOW + HOUR);
+        AlarmModel desired = repeatDaily(alarm("note-1", NOW + HOUR));
+
+        AlarmSync sync = AlarmSync.diff(Collections.singletonList(current), Collections.singletonList(desired), NOW);
+
+        assertEquals(1, sync.updates.size());
+        assertEquals(NOW + HOUR, sync.updates.get(0).getRequestedFireTime());
+    }
+
+    @Test
+    public void newOnceAlarmInThePastIsExpired() {
+        AlarmModel desired = alarm("note-1", NOW - HOUR);
+
+        AlarmSync sync = AlarmSync.diff(Collections.<AlarmModel>emptyList(), Collections.singletonList(desired), NOW);
+
+        assertTrue(sync.inserts.isEmpty());
+        assertEquals(1, sync.expired);
+    }
+}
@@ -0,0 +1,149 @@
+package com.emekalites.react.alarm.notification;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecurrenceTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final int MONDAY = 1 << 1;
+    private static final int WEDNESDAY = 1 << 3;
+
+    // wall clock time in New York, month 1 is January
+    private static long time(int year, int month, int day, int hour) {
+        Calendar calendar = new GregorianCalendar(NEW_YORK);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static Recurrence rule(String interval, int every, int weekdays, int monthDay, long until, int count) {
+        return new Recurrence(interval, every, weekdays, monthDay, until, count, NEW_YORK);
+    }
+
+    @Test
+    public void monthDayPastTheEndOfAMonthFallsOnItsLastDay() {
+        Recurrence monthly = rule(Recurrence.MONTHLY, 1, 0, 31, 0, 0);
+
+        long april = monthly.next(time(2027, 3, 31, 9), 1, time(2027, 3, 31, 9));
+        assertEquals(time(2027, 4, 30, 9), april);
+        // the 31st again once the month has one
+        assertEquals(time(2027, 5, 31, 9), monthly.next(april, 2, april));
+    }
+
+    @Test
+    public void lastDayOfMonth() {
+        Recurrence monthly = rule(Recurrence.MONTHLY, 1, 0, Recurrence.LAST_DAY_OF_MONTH, 0, 0);
+
+        assertEquals(time(2027, 2, 28, 9), monthly.next(time(2027, 1, 31, 9), 1, time(2027, 1, 31, 9)));
+        assertEquals(time(2028, 2, 29, 9), monthly.next(time(2028, 1, 31, 9), 1, time(2028, 1, 31, 9)));
+    }
+
+    @Test
+    public void yearlyOnFebruary29FallsOnFebruary28InOtherYears() {
+        Recurrence yearly = rule(Recurrence.YEARLY, 1, 0, 29, 0, 0);
+
+        long next = yearly.next(time(2028, 2, 29, 9), 1, time(2028, 2, 29, 9));
+        assertEquals(time(2029, 2, 28, 9), next);
+        assertEquals(time(2032, 2, 29, 9), yearly.next(time(2031, 2, 28, 9), 4, time(2031, 2, 28, 9)));
+    }
+
+    @Test
+    public void dailyKeepsItsWallClockTimeAcrossDstChanges() {
+        Recurrence daily = rule(Recurrence.DAILY, 1, 0, 0, 0, 0);
+
+        // spring forward, a day of 23 hours
+        long spring = daily.next(time(2027, 3, 13, 9), 1, time(2027, 3, 13, 9));
+        assertEquals(time(2027, 3, 14, 9), spring);
+        assertEquals(23 * HOUR, spring - time(2027, 3, 13, 9));
+
+        // fall back, a day of 25 hours
+        long fall = daily.next(time(2027, 11, 6, 9), 1, time(2027, 11, 6, 9));
+        assertEquals(time(2027, 11, 7, 9), fall);
+        assertEquals(25 * HOUR, fall - time(2027, 11, 6, 9));
+    }
+
+    @Test
+    public void hourlyRepeatsInElapsedTimeAcrossDstChanges() {
+        Recurrence hourly = rule(Recurrence.HOURLY, 1, 0, 0, 0, 0);
+
+        long current = time(2027, 3, 14, 1);
+        assertEquals(current + HOUR, hourly.next(current, 1, current));
+    }
+
+    @Test
+    public void everyTwoWeeksOnSeveralWeekdays() {
+        Recurrence weekly = rule(Recurrence.WEEKLY, 2, MONDAY | WEDNESDAY, 0, 0, 0);
+
+        // Monday January 4, 2027, then the Wednesday of the same week
+        long wednesday = weekly.next(time(2027, 1, 4, 9), 1, time(2027, 1, 4, 9));
+        assertEquals(time(2027, 1, 6, 9), wednesday);
+        // the week after is skipped
+        assertEquals(time(2027, 1, 18, 9), weekly.next(wednesday, 2, wednesday));
+    }
+
+    @Test
+    public void endsAfterCountOccurrences() {
+        Recurrence daily = rule(Recurrence.DAILY, 1, 0, 0, 0, 3);
+
+        long current = time(2027, 1, 4, 9);
+        assertEquals(time(2027, 1, 5, 9), daily.next(current, 2, current));
+        assertEquals(-1, daily.next(current, 3, current));
+    }
+
+    @Test
+    public void endsAtUntil() {
+        long current = time(2027, 1, 4, 9);
+
+        Recurrence includesNext = rule(Recurrence.DAILY, 1, 0, 0, time(2027, 1, 5, 9), 0);
+        assertEquals(time(2027, 1, 5, 9), includesNext.next(current, 1, current));
+
+        Recurrence endsBefore = rule(Recurrence.DAILY, 1, 0, 0, time(2027, 1, 5, 9) - 1, 0);
+        assertEquals(-1, endsBefore.next(current, 1, current));
+    }
+
+    @Test
+    public void catchUpSkipsMissedOccurrences() {
+        AlarmModel alarm = repeating(Recurrence.DAILY, time(2027, 1, 4, 9));
+
+        assertTrue(Recurrence.catchUp(alarm, time(2027, 1, 9, 10)));
+        assertEquals(time(2027, 1, 10, 9), alarm.getFireTime());
+        // skipped occurrences don't count
+        assertEquals(0, alarm.getOccurrences());
+    }
+
+    @Test
+    public void catchUpEndsRulesThatEndedInTheMeantime() {
+        AlarmModel alarm = repeating(Recurrence.DAILY, time(2027, 1, 4, 9));
+        alarm.setRepeatUntil(time(2027, 1, 6, 9));
+
+        assertFalse(Recurrence.catchUp(alarm, time(2027, 1, 9, 10)));
+    }
+
+    @Test
+    public void catchUpLeavesFutureAlarmsAlone() {
+        AlarmModel alarm = repeating(Recurrence.DAILY, time(2027, 1, 4, 9));
+
+        assertTrue(Recurrence.catchUp(alarm, time(2027, 1, 3, 9)));
+        assertEquals(time(2027, 1, 4, 9), alarm.getFireTime());
+    }
+
+    private static AlarmModel repeating(String interval, long fireTime) {
+        AlarmModel alarm = new AlarmModel();
+        alarm.setScheduleType("repeat");
+        alarm.setInterval(interval);
+        alarm.setIntervalValue(1);
+        alarm.setTimeZone(NEW_YORK.getID());
+        alarm.setFireTime(fireTime);
+        alarm.setRequestedFireTime(fireTime);
+        return alarm;
+    }
+}
@@ -1,7 +1,6 @@
 package com.emekalites.react.alarm.notification;
 
 import android.app.Activity;
-import android.app.Application;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
@@ -15,37 +14,60 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
-import com.google.gson.Gson;
-
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("unused")
 public class ANModule extends ReactContextBaseJavaModule implements ActivityEventListener {
     private final AlarmUtil alarmUtil;
     private final AlarmDatabase alarmDB;
-    private static ReactApplicationContext mReactContext;
+    private final AlarmEvents events;
 
     private static final String E_SCHEDULE_ALARM_FAILED = "E_SCHEDULE_ALARM_FAILED";
+    private static final String E_QUERY_ALARMS_FAILED = "E_QUERY_ALARMS_FAILED";
+    private static final String E_CONFIGURE_FAILED = "E_CONFIGURE_FAILED";
+    private static final String E_CREATE_CHANNELS_FAILED = "E_CREATE_CHANNELS_FAILED";
+    private static final String E_DELETE_ALARMS_FAILED = "E_DELETE_ALARMS_FAILED";
+    private static final String E_SYNC_ALARMS_FAILED = "E_SYNC_ALARMS_FAILED";
+    private static final String E_UPDATE_ALARM_FAILED = "E_UPDATE_ALARM_FAILED";
+    private static final String E_GET_DIAGNOSTICS_FAILED = "E_GET_DIAGNOSTICS_FAILED";
+    private static final String E_DUMP_TRACE_FAILED = "E_DUMP_TRACE_FAILED";
 
     ANModule(ReactApplicationContext reactContext) {
         super(reactContext);
         
-        mReactContext = reactContext;
-        alarmUtil = new AlarmUtil((Application) reactContext.getApplicationContext());
-        alarmDB = new AlarmDatabase(mReactContext);
+        alarmUtil = AlarmUtil.getInstance(reactContext);
+        alarmDB = AlarmDatabase.getInstance(reactContext);
+        events = AlarmEvents.getInstance(reactContext);
+        events.attach(reactContext);
+
+        reactContext.addActivityEventListener(this);
+    }
 
-        mReactContext.addActivityEventListener(this);
+    @Override
+    public void onCatalystInstanceDestroy() {
+        events.detach(getReactApplicationContext());
+    }
+
+    /**
+     * Called by addEventListener when JS subscribes to an event. Events are queued until the
+     * first call, which emits them.
+     */
+    @ReactMethod
+    public void addListener(String eventName) {
+        events.addListener(eventName);
     }
 
-    static ReactApplicationContext getReactAppContext() {
-        return mReactContext;
+    @ReactMethod
+    public void removeListeners(double count) {
+        // required by NativeEventEmitter, events keep being emitted once the first listener subscribed
     }
 
     @NonNull
@@ -58,20 +80,16 @@ public class ANModule extends ReactContextBaseJavaModule implements ActivityEven
     public void scheduleAlarm(ReadableMap details, Promise promise) {
         try {
             Bundle bundle = Arguments.toBundle(details);
-            AlarmModel alarm = AlarmModel.fromBundle(bundle);
+            AlarmModel alarm = AlarmSerializer.fromBundle(bundle);
+            String policy = getDuplicatePolicy(bundle);
+            boolean scopeByTag = bundle.getBoolean("dedupe_by_tag", false);
 
-            // check if alarm has been set at this time
-            boolean containAlarm = alarmUtil.checkAlarm(alarmDB.getActiveAlarmList(), alarm);
-            if (containAlarm) {
+            int id = alarmUtil.scheduleAlarms(new AlarmModel[]{alarm}, new String[]{policy}, new boolean[]{scopeByTag})[0];
+            if (id == 0) {
                 promise.reject(E_SCHEDULE_ALARM_FAILED, "duplicate alarm set at date");
                 return;
             }
 
-            int id = alarmDB.insert(alarm);
-            alarm.setId(id);
-
-            alarmUtil.setAlarm(alarm);
-
             WritableMap map = Arguments.createMap();
             map.putInt("id", id);
             promise.resolve(map);
@@ -82,6 +100,164 @@ public class ANModule extends ReactContextBaseJavaModule implements ActivityEven
         }
     }
 
+    @ReactMethod
+    public void scheduleAlarms(ReadableArray detailsList, Promise promise) {
+        try {
+            // parse everything first so that one invalid entry rejects the whole batch
+            int count = detailsList.size();
+            AlarmModel[] alarms = new AlarmModel[count];
+            String[] policies = new String[count];
+            boolean[] scopeByTag = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                Bundle bundle = Arguments.toBundle(detailsList.getMap(i));
+                alarms[i] = AlarmSerializer.fromBundle(bundle);
+                policies[i] = getDuplicatePolicy(bundle);
+                scopeByTag[i] = bundle.getBoolean("dedupe_by_tag", false);
+            }
+
+            int[] ids = alarmUtil.scheduleAlarms(alarms, policies, scopeByTag);
+
+            // one entry per requested alarm, null for the ones skipped as duplicates
+            WritableArray result = Arguments.createArray();
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == 0) {
+                    result.pushNull();
+                } else {
+                    result.pushInt(ids[i]);
+                }
+            }
+            promise.resolve(result);
+
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not schedule alarms", e);
+            promise.reject(E_SCHEDULE_ALARM_FAILED, e);
+        }
+    }
+
+    /**
+     * Changes the given keys of a scheduled alarm, with the same keys as scheduleAlarm, and
+     * resolves with the updated alarm. The alarm keeps its id.
+     */
+    @ReactMethod
+    public void updateAlarm(int alarmID, ReadableMap patch, Promise promise) {
+        try {
+            AlarmModel alarm = alarmUtil.updateAlarm(alarmID, Arguments.toBundle(patch));
+            if (alarm == null) {
+                promise.reject(E_UPDATE_ALARM_FAILED, "alarm not found: " + alarmID);
+                return;
+            }
+
+            promise.resolve(AlarmSerializer.toMap(alarm, null));
+
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not update alarm " + alarmID, e);
+            promise.reject(E_UPDATE_ALARM_FAILED, e);
+        }
+    }
+
+    /**
+     * Makes the alarms scheduled with an external_key match the given list, each entry needs a
+     * unique external_key. Alarms scheduled without one are not touched.
+     */
+    @ReactMethod
+    public void syncAlarms(ReadableArray desiredList, Promise promise) {
+        try {
+            int count = desiredList.size();
+            ArrayList<AlarmModel> desired = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                desired.add(AlarmSerializer.fromBundle(Arguments.toBundle(desiredList.getMap(i))));
+            }
+
+            AlarmSync sync = alarmUtil.syncAlarms(desired);
+
+            WritableMap result = Arguments.createMap();
+            result.putInt("inserted", sync.inserts.size());
+            result.putInt("updated", sync.updates.size());
+            result.putInt("deleted", sync.deletes.size());
+            result.putInt("unchanged", sync.unchanged);
+            result.putInt("expired", sync.expired);
+            promise.resolve(result);
+
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not sync alarms", e);
+            promise.reject(E_SYNC_ALARMS_FAILED, e);
+        }
+    }
+
+    private static String getDuplicatePolicy(Bundle bundle) {
+        String policy = bundle.getString("duplicate_policy", Constants.DUPLICATE_REJECT);
+        if (!Constants.DUPLICATE_REJECT.equals(policy) &&
+                !Constants.DUPLICATE_REPLACE.equals(policy) &&
+                !Constants.DUPLICATE_ALLOW.equals(policy)) {
+            throw new IllegalArgumentException("Unknown duplicate policy: " + policy);
+        }
+        return policy;
+    }
+
+    /**
+     * Options (all optional): scheduler_mode, either per_alarm (default) or single_wakeup.
+     */
+    @ReactMethod
+    public void configure(ReadableMap options, Promise promise) {
+        try {
+            if (options.hasKey("scheduler_mode")) {
+                String mode = options.getString("scheduler_mode");
+                if (!Constants.SCHEDULER_PER_ALARM.equals(mode) && !Constants.SCHEDULER_SINGLE_WAKEUP.equals(mode)) {
+                    throw new IllegalArgumentException("Unknown scheduler mode: " + mode);
+                }
+                alarmUtil.setSchedulerMode(mode);
+            }
+            if (options.hasKey("coalesce_window")) {
+                long window = (long) options.getDouble("coalesce_window");
+                if (window < 0) {
+                    throw new IllegalArgumentException("Coalesce window must not be negative: " + window);
+                }
+                alarmUtil.getSettings().setCoalesceWindow(window);
+            }
+            if (options.hasKey("missed_alarm_policy")) {
+                String policy = options.getString("missed_alarm_policy");
+                if (!Constants.MISSED_DIGEST.equals(policy) && !Constants.MISSED_DROP.equals(policy) && !Constants.MISSED_INDIVIDUAL.equals(policy)) {
+                    throw new IllegalArgumentException("Unknown missed alarm policy: " + policy);
+                }
+                alarmUtil.getSettings().setMissedAlarmPolicy(policy);
+            }
+            if (options.hasKey("trace_level")) {
+                String level = options.getString("trace_level");
+                if (!Trace.isLevel(level)) {
+                    throw new IllegalArgumentException("Unknown trace level: " + level);
+                }
+                alarmUtil.getSettings().setTraceLevel(level);
+                Trace.setLevel(level);
+            }
+            if (options.hasKey("main_activity")) {
+                alarmUtil.setMainActivity(options.isNull("main_activity") ? null : options.getString("main_activity"));
+            }
+            promise.resolve(null);
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not configure", e);
+            promise.reject(E_CONFIGURE_FAILED, e);
+        }
+    }
+
+    /**
+     * Creates notification channels up front instead of when their first alarm fires. Entries
+     * take the channel keys of scheduleAlarm: channel, color, vibrate, vibration_pattern,
+     * play_sound and bypass_dnd.
+     */
+    @ReactMethod
+    public void createChannels(ReadableArray channels, Promise promise) {
+        try {
+            ChannelRegistry registry = ChannelRegistry.getInstance(getReactApplicationContext());
+            for (int i = 0; i < channels.size(); i++) {
+                registry.ensureChannel(AlarmSerializer.channelFromBundle(Arguments.toBundle(channels.getMap(i))));
+            }
+            promise.resolve(null);
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not create channels", e);
+            promise.reject(E_CREATE_CHANNELS_FAILED, e);
+        }
+    }
+
     @ReactMethod
     public void deleteAlarm(int alarmID) {
         alarmUtil.deleteAlarm(alarmID);
@@ -92,6 +268,43 @@ public class ANModule extends ReactContextBaseJavaModule implements ActivityEven
         alarmUtil.deleteRepeatingAlarm(alarmID);
     }
 
+    /**
+     * Deletes the alarms with the given ids at once and resolves with the number deleted.
+     */
+    @ReactMethod
+    public void deleteAlarms(ReadableArray alarmIDs, Promise promise) {
+        try {
+            int[] ids = new int[alarmIDs.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = alarmIDs.getInt(i);
+            }
+            promise.resolve(alarmUtil.deleteAlarms(ids));
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not delete alarms", e);
+            promise.reject(E_DELETE_ALARMS_FAILED, e);
+        }
+    }
+
+    @ReactMethod
+    public void deleteAlarmsByTag(String tag, Promise promise) {
+        try {
+            promise.resolve(alarmUtil.deleteAlarmsByTag(tag));
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not delete alarms with tag " + tag, e);
+            promise.reject(E_DELETE_ALARMS_FAILED, e);
+        }
+    }
+
+    @ReactMethod
+    public void deleteAllAlarms(Promise promise) {
+        try {
+            promise.resolve(alarmUtil.deleteAllAlarms());
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not delete all alarms", e);
+            promise.reject(E_DELETE_ALARMS_FAILED, e);
+        }
+    }
+
     @ReactMethod
     public void removeFiredNotification(int id) {
         alarmUtil.removeFiredNotification(id);
@@ -103,17 +316,119 @@ public class ANModule extends ReactContextBaseJavaModule implements ActivityEven
     }
 
     @ReactMethod
-    public void getScheduledAlarms(Promise promise) throws JSONException {
+    public void getScheduledAlarms(Promise promise) {
         ArrayList<AlarmModel> alarms = alarmDB.getActiveAlarmList();
         WritableArray array = Arguments.createArray();
-        Gson gson = new Gson();
         for (AlarmModel alarm : alarms) {
-            WritableMap alarmMap = alarmUtil.convertJsonToMap(new JSONObject(gson.toJson(alarm)));
-            array.pushMap(alarmMap);
+            array.pushMap(AlarmSerializer.toMap(alarm, null));
         }
         promise.resolve(array);
     }
 
+    /**
+     * Like getScheduledAlarms, but only the alarms matching the query and only the requested fields.
+     * Query keys (all optional): offset, limit, from and to (fire time window in epoch millis,
+     * to is exclusive), tag and fields (list of keys to return for each alarm).
+     */
+    @ReactMethod
+    public void queryScheduledAlarms(ReadableMap query, Promise promise) {
+        try {
+            int offset = query.hasKey("offset") ? query.getInt("offset") : 0;
+            int limit = query.hasKey("limit") ? query.getInt("limit") : 0;
+            long from = query.hasKey("from") ? (long) query.getDouble("from") : Long.MIN_VALUE;
+            long to = query.hasKey("to") ? (long) query.getDouble("to") : Long.MAX_VALUE;
+            String tag = query.hasKey("tag") ? query.getString("tag") : null;
+
+            HashSet<String> fields = null;
+            if (query.hasKey("fields")) {
+                ReadableArray fieldList = query.getArray("fields");
+                fields = new HashSet<>();
+                for (int i = 0; i < fieldList.size(); i++) {
+                    fields.add(fieldList.getString(i));
+                }
+            }
+
+            ArrayList<AlarmModel> alarms = alarmDB.getActiveAlarmList(from, to, tag, Math.max(offset, 0), Math.max(limit, 0));
+            WritableArray array = Arguments.createArray();
+            for (AlarmModel alarm : alarms) {
+                array.pushMap(AlarmSerializer.toMap(alarm, fields));
+            }
+            promise.resolve(array);
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not query alarms", e);
+            promise.reject(E_QUERY_ALARMS_FAILED, e);
+        }
+    }
+
+    /**
+     * Timing histograms recorded by this process since it started or since the last reset, with
+     * the number of alarms registered with AlarmManager. With reset the histograms start over
+     * once they have been read.
+     */
+    @ReactMethod
+    public void getDiagnostics(boolean reset, Promise promise) {
+        try {
+            WritableMap metrics = Arguments.createMap();
+            for (Map.Entry<String, Histogram> entry : Metrics.all().entrySet()) {
+                metrics.putMap(entry.getKey(), histogramToMap(entry.getValue()));
+            }
+
+            WritableMap diagnostics = Arguments.createMap();
+            diagnostics.putDouble("since", Metrics.since());
+            diagnostics.putString("schedulerMode", alarmUtil.getSettings().getSchedulerMode());
+            diagnostics.putInt("registrations", alarmUtil.getRegistrationCount());
+            diagnostics.putInt("activeAlarms", alarmDB.getActiveCount());
+            diagnostics.putMap("metrics", metrics);
+
+            if (reset) {
+                Metrics.reset();
+            }
+            promise.resolve(diagnostics);
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not get diagnostics", e);
+            promise.reject(E_GET_DIAGNOSTICS_FAILED, e);
+        }
+    }
+
+    /**
+     * Scheduler events recorded by this process, oldest first, for bug reports. With clear the
+     * trace starts over once it has been read.
+     */
+    @ReactMethod
+    public void dumpTrace(boolean clear, Promise promise) {
+        try {
+            final WritableArray entries = Arguments.createArray();
+            Trace.dump(new Trace.Visitor() {
+                @Override
+                public void visit(long time, String event, int id, long value) {
+                    WritableMap entry = Arguments.createMap();
+                    entry.putDouble("time", time);
+                    entry.putString("event", event);
+                    entry.putInt("id", id);
+                    entry.putDouble("value", value);
+                    entries.pushMap(entry);
+                }
+            }, clear);
+            promise.resolve(entries);
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not dump trace", e);
+            promise.reject(E_DUMP_TRACE_FAILED, e);
+        }
+    }
+
+    private static WritableMap histogramToMap(Histogram histogram) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        WritableMap map = Arguments.createMap();
+        map.putString("unit", histogram.getUnit() == TimeUnit.MILLISECONDS ? "ms" : "us");
+        map.putDouble("count", snapshot.count);
+        map.putDouble("mean", snapshot.mean());
+        map.putDouble("max", snapshot.max);
+        map.putDouble("p50", snapshot.percentile(50));
+        map.putDouble("p90", snapshot.percentile(90));
+        map.putDouble("p99", snapshot.percentile(99));
+        return map;
+    }
+
     @Override
     public void onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
 
@@ -129,13 +444,13 @@ public class ANModule extends ReactContextBaseJavaModule implements ActivityEven
 
             try {
                 int id = bundle.getInt(Constants.NOTIFICATION_ALARM_ID);
+                AlarmModel alarm = alarmDB.getAlarm(id);
                 alarmUtil.removeFiredNotification(id);
                 alarmUtil.cancelOnceAlarm(id);
 
-                mReactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                        .emit("OnNotificationOpened", "{\"id\": \"" + id + "\"}");
+                events.emit(AlarmEvents.NOTIFICATION_OPENED, id, alarm);
             } catch (Exception e) {
-                Log.e(Constants.TAG, "Couldn't convert bundle to JSON", e);
+                Log.e(Constants.TAG, "Failed to handle notification click", e);
             }
         }
     }
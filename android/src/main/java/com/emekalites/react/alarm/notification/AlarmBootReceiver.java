@@ -1,17 +1,14 @@
 package com.emekalites.react.alarm.notification;
 
-import android.app.Application;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
-import java.util.ArrayList;
-
 public class AlarmBootReceiver extends BroadcastReceiver {
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(Context context, final Intent intent) {
         if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction()) ||
                 "android.intent.action.QUICKBOOT_POWERON".equals(intent.getAction()) ||
                 "android.intent.action.LOCKED_BOOT_COMPLETED".equals(intent.getAction()) ||
@@ -19,16 +16,21 @@ public class AlarmBootReceiver extends BroadcastReceiver {
 
             Log.i(Constants.TAG, "Rescheduling after boot, intent=" + intent);
 
-            try (AlarmDatabase alarmDB = new AlarmDatabase(context)) {
-                AlarmUtil alarmUtil = new AlarmUtil((Application) context.getApplicationContext());
-
-                ArrayList<AlarmModel> alarms = alarmDB.getActiveAlarmList();
-                for (AlarmModel alarm : alarms) {
-                    alarmUtil.setAlarm(alarm);
+            final Context appContext = context.getApplicationContext();
+            ReceiverExecutor.execute(this, context, "boot", new ReceiverExecutor.Work() {
+                @Override
+                public void run(ReceiverExecutor.Stages stages) {
+                    reschedule(appContext, stages);
                 }
-            } catch (Exception e) {
-                Log.e(Constants.TAG, "Could not reschedule alarms on boot", e);
-            }
+            });
+        }
+    }
+
+    private void reschedule(Context context, ReceiverExecutor.Stages stages) {
+        try {
+            AlarmUtil.getInstance(context).rescheduleAll(stages);
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Could not reschedule alarms on boot", e);
         }
     }
 }
@@ -3,17 +3,30 @@ package com.emekalites.react.alarm.notification;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
-import com.google.gson.Gson;
-
+import java.io.IOException;
 import java.util.ArrayList;
-
-public class AlarmDatabase extends SQLiteOpenHelper implements AutoCloseable {
-
-    private static final int DATABASE_VERSION = 1;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Process-wide alarm store. The helper keeps its connection open for the lifetime of the process,
+ * SQLiteDatabase serializes access so the instance can be shared by the bridge and the main thread.
+ */
+public class AlarmDatabase extends SQLiteOpenHelper {
+
+    // 1: id, gson_data, active
+    // 2: + fire_time (epoch millis), schedule_type, notification_id, tag and their indexes
+    // 3: + bin_data (AlarmCodec), gson_data is only kept for rows not written since
+    // 4: + delivered and the pending queue index
+    // 5: + event queue table (AlarmEvents)
+    // 6: + external_key and its index
+    // 7: + sequence table (IdAllocator)
+    private static final int DATABASE_VERSION = 7;
     private static final String DATABASE_NAME = "rnandb";
 
     private static final String TABLE_NAME = "alarmtbl";
@@ -21,106 +34,734 @@ public class AlarmDatabase extends SQLiteOpenHelper implements AutoCloseable {
     private static final String COL_ID = "id";
     private static final String COL_DATA = "gson_data";
     private static final String COL_ACTIVE = "active";
+    private static final String COL_FIRE_TIME = "fire_time";
+    private static final String COL_SCHEDULE_TYPE = "schedule_type";
+    private static final String COL_NOTIFICATION_ID = "notification_id";
+    private static final String COL_TAG = "tag";
+    private static final String COL_BIN_DATA = "bin_data";
+    private static final String COL_DELIVERED = "delivered";
+    private static final String COL_EXTERNAL_KEY = "external_key";
+
+    private static final String EVENT_TABLE_NAME = "event_queue";
+
+    private static final String COL_EVENT_SEQ = "seq";
+    private static final String COL_EVENT_NAME = "name";
+    private static final String COL_EVENT_ALARM_ID = "alarm_id";
+    private static final String COL_EVENT_NOTIFICATION_ID = "notification_id";
+    private static final String COL_EVENT_TAG = "tag";
+    private static final String COL_EVENT_DATA = "data";
+    private static final String COL_EVENT_TIME = "time";
+
+    private static final String SEQUENCE_TABLE_NAME = "id_sequence";
+
+    private static final String COL_SEQUENCE_NAME = "name";
+    private static final String COL_SEQUENCE_LIMIT = "reserved_limit";
+
+    private static final String SEQUENCE_NOTIFICATION_ID = "notification_id";
+
+    private static final String COLUMNS = COL_ID + ", " + COL_DATA + ", " + COL_ACTIVE + ", " + COL_BIN_DATA + ", " + COL_DELIVERED;
+
+    // alarms still waiting to fire, ordered by fire time
+    private static final String WHERE_PENDING = COL_ACTIVE + " = 1 AND " + COL_DELIVERED + " = 0";
 
     private final String CREATE_TABLE_ALARM = "CREATE TABLE " + TABLE_NAME + " ("
             + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
             + COL_DATA + " TEXT, "
-            + COL_ACTIVE + " INTEGER) ";
-
-    private final Gson gson = new Gson();
-
-    AlarmDatabase(Context context) {
+            + COL_ACTIVE + " INTEGER, "
+            + COL_FIRE_TIME + " INTEGER NOT NULL DEFAULT 0, "
+            + COL_SCHEDULE_TYPE + " TEXT, "
+            + COL_NOTIFICATION_ID + " INTEGER NOT NULL DEFAULT 0, "
+            + COL_TAG + " TEXT, "
+            + COL_BIN_DATA + " BLOB, "
+            + COL_DELIVERED + " INTEGER NOT NULL DEFAULT 0, "
+            + COL_EXTERNAL_KEY + " TEXT) ";
+
+    private final String[] CREATE_INDEXES_ALARM = {
+            "CREATE INDEX IF NOT EXISTS idx_alarm_active_fire_time ON " + TABLE_NAME + " (" + COL_ACTIVE + ", " + COL_FIRE_TIME + ")",
+            "CREATE INDEX IF NOT EXISTS idx_alarm_schedule_type ON " + TABLE_NAME + " (" + COL_SCHEDULE_TYPE + ")",
+            "CREATE INDEX IF NOT EXISTS idx_alarm_notification_id ON " + TABLE_NAME + " (" + COL_NOTIFICATION_ID + ")",
+            "CREATE INDEX IF NOT EXISTS idx_alarm_tag ON " + TABLE_NAME + " (" + COL_TAG + ")",
+    };
+
+    private final String CREATE_TABLE_EVENT = "CREATE TABLE " + EVENT_TABLE_NAME + " ("
+            + COL_EVENT_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + COL_EVENT_NAME + " TEXT NOT NULL, "
+            + COL_EVENT_ALARM_ID + " INTEGER NOT NULL, "
+            + COL_EVENT_NOTIFICATION_ID + " INTEGER NOT NULL, "
+            + COL_EVENT_TAG + " TEXT, "
+            + COL_EVENT_DATA + " TEXT, "
+            + COL_EVENT_TIME + " INTEGER NOT NULL) ";
+
+    private final String CREATE_TABLE_SEQUENCE = "CREATE TABLE " + SEQUENCE_TABLE_NAME + " ("
+            + COL_SEQUENCE_NAME + " TEXT PRIMARY KEY, "
+            + COL_SEQUENCE_LIMIT + " INTEGER NOT NULL) ";
+
+    private final String CREATE_INDEX_PENDING = "CREATE INDEX IF NOT EXISTS idx_alarm_pending ON " + TABLE_NAME
+            + " (" + COL_ACTIVE + ", " + COL_DELIVERED + ", " + COL_FIRE_TIME + ")";
+
+    private final String CREATE_INDEX_EXTERNAL_KEY = "CREATE INDEX IF NOT EXISTS idx_alarm_external_key ON " + TABLE_NAME
+            + " (" + COL_EXTERNAL_KEY + ")";
+
+    // enough for a few thousand reminders, beyond that list queries go back to the database
+    private static final int CACHE_SIZE = 4096;
+
+    private static AlarmDatabase instance;
+    private final AlarmCache cache = new AlarmCache(CACHE_SIZE);
+
+    // created on first use, it resumes after the persisted reservation
+    private final Object sequenceLock = new Object();
+    private volatile IdAllocator notificationIds;
+
+    // number of active alarms, -1 until first counted. Writes that change it hold countLock,
+    // so the count can't miss or double count a write that commits while it is first counted.
+    // It is also the write lock callers hold to check for duplicates before inserting.
+    private final Object countLock = new Object();
+    private int activeCount = -1;
+
+    private AlarmDatabase(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // readers don't wait for writers, e.g. the UI listing alarms while a receiver updates one
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    static synchronized AlarmDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlarmDatabase(context.getApplicationContext());
+        }
+        return instance;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE_ALARM);
+        createIndexes(db);
+        db.execSQL(CREATE_INDEX_PENDING);
+        db.execSQL(CREATE_INDEX_EXTERNAL_KEY);
+        db.execSQL(CREATE_TABLE_EVENT);
+        db.execSQL(CREATE_TABLE_SEQUENCE);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL(String.format(" DROP TABLE IF EXISTS %s", CREATE_TABLE_ALARM));
-        onCreate(db);
+        // runs inside the transaction opened by SQLiteOpenHelper, each step upgrades one version
+        if (oldVersion < 2) {
+            migrateToV2(db);
+        }
+        if (oldVersion < 3) {
+            // rows are re-encoded lazily, the next time they are written
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_BIN_DATA + " BLOB");
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_DELIVERED + " INTEGER NOT NULL DEFAULT 0");
+            // once alarms in the past have already fired
+            db.execSQL("UPDATE " + TABLE_NAME + " SET " + COL_DELIVERED + " = 1 WHERE "
+                    + COL_SCHEDULE_TYPE + " = 'once' AND " + COL_FIRE_TIME + " <= " + System.currentTimeMillis());
+            db.execSQL(CREATE_INDEX_PENDING);
+        }
+        if (oldVersion < 5) {
+            db.execSQL(CREATE_TABLE_EVENT);
+        }
+        if (oldVersion < 6) {
+            // existing alarms have no external key
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_EXTERNAL_KEY + " TEXT");
+            db.execSQL(CREATE_INDEX_EXTERNAL_KEY);
+        }
+        if (oldVersion < 7) {
+            // the allocator starts after the notification ids of existing alarms
+            db.execSQL(CREATE_TABLE_SEQUENCE);
+        }
     }
 
-    AlarmModel getAlarm(int _id) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        AlarmModel alarm = null;
+    private void createIndexes(SQLiteDatabase db) {
+        for (String sql : CREATE_INDEXES_ALARM) {
+            db.execSQL(sql);
+        }
+    }
 
-        String selectQuery = "SELECT * FROM " + TABLE_NAME + " WHERE " + COL_ID + " = " + _id;
+    private void migrateToV2(SQLiteDatabase db) {
+        Log.i(Constants.TAG, "Migrating alarm table to version 2");
 
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_FIRE_TIME + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_SCHEDULE_TYPE + " TEXT");
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_NOTIFICATION_ID + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_TAG + " TEXT");
+
+        String selectQuery = "SELECT " + COL_ID + ", " + COL_DATA + " FROM " + TABLE_NAME;
         try (Cursor cursor = db.rawQuery(selectQuery, null)) {
-            if (!cursor.moveToFirst()) {
-                return alarm;
+            ContentValues values = new ContentValues();
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                try {
+                    AlarmModel alarm = AlarmCodec.decodeJson(cursor.getString(1));
+                    values.clear();
+                    putV2Columns(values, alarm);
+                    db.update(TABLE_NAME, values, COL_ID + " = " + id, null);
+                } catch (Exception e) {
+                    // keep the row, it only loses the indexed columns
+                    Log.e(Constants.TAG, "Could not migrate alarm with id " + id, e);
+                }
             }
+        }
 
-            int id = cursor.getInt(0);
-            String data = cursor.getString(1);
-            int active = cursor.getInt(2);
+        createIndexes(db);
+    }
 
-            Log.d(Constants.TAG, "get alarm -> id:" + id + ", active:" + active + ", " + data);
+    private void putValues(ContentValues values, AlarmModel alarm) {
+        values.put(COL_BIN_DATA, AlarmCodec.encode(alarm));
+        values.putNull(COL_DATA);
+        values.put(COL_ACTIVE, alarm.getActive());
+        values.put(COL_DELIVERED, alarm.isDelivered() ? 1 : 0);
+        putIndexedColumns(values, alarm);
+    }
 
+    private AlarmModel readAlarm(Cursor cursor) throws IOException {
+        int id = cursor.getInt(0);
+        int active = cursor.getInt(2);
 
-            alarm = gson.fromJson(data, AlarmModel.class);
-            alarm.setId(id);
-            alarm.setActive(active);
-        } catch (Exception e) {
-            Log.e(Constants.TAG, "Error getting alarm with id " + _id, e);
+        AlarmModel alarm;
+        if (cursor.isNull(3)) {
+            alarm = AlarmCodec.decodeJson(cursor.getString(1));
+        } else {
+            alarm = AlarmCodec.decode(cursor.getBlob(3));
+        }
+        alarm.setId(id);
+        alarm.setActive(active);
+        alarm.setDelivered(cursor.getInt(4) == 1);
+        return alarm;
+    }
+
+    private void putIndexedColumns(ContentValues values, AlarmModel alarm) {
+        putV2Columns(values, alarm);
+        values.put(COL_EXTERNAL_KEY, alarm.getExternalKey());
+    }
+
+    // the indexed columns added in version 2, later columns don't exist yet while migrating to it
+    private void putV2Columns(ContentValues values, AlarmModel alarm) {
+        values.put(COL_FIRE_TIME, alarm.getFireTime());
+        values.put(COL_SCHEDULE_TYPE, alarm.getScheduleType());
+        values.put(COL_NOTIFICATION_ID, alarm.getNotificationId());
+        values.put(COL_TAG, alarm.getTag());
+    }
+
+    AlarmModel getAlarm(int _id) {
+        AlarmModel alarm = cache.get(_id);
+        if (alarm != null) {
+            return alarm;
+        }
+
+        long since = cache.getWriteCount();
+        alarm = queryAlarm(COL_ID + " = " + _id);
+        if (alarm != null) {
+            cache.putIfUnchanged(alarm, since);
+        }
+        return alarm;
+    }
+
+    AlarmModel getAlarmByNotificationId(int notificationId) {
+        AlarmModel alarm = cache.getByNotificationId(notificationId);
+        if (alarm != null || cache.isComplete()) {
+            return alarm;
         }
 
+        long since = cache.getWriteCount();
+        alarm = queryAlarm(COL_ACTIVE + " = 1 AND " + COL_NOTIFICATION_ID + " = " + notificationId);
+        if (alarm != null) {
+            cache.putIfUnchanged(alarm, since);
+        }
         return alarm;
     }
 
-    int insert(AlarmModel alarm) {
+    /**
+     * Active alarm with the same fire time, optionally only one with the same tag. Fire times
+     * are stored as whole seconds, so this is an alarm firing at the same second.
+     * Answered from the cache when it holds every active alarm, otherwise from the fire time index.
+     */
+    AlarmModel findDuplicate(long fireTime, String tag) {
+        if (!cache.isLoaded()) {
+            getActiveAlarmList();
+        }
+        if (cache.isComplete()) {
+            return cache.findByFireTime(fireTime, tag);
+        }
 
-        try (SQLiteDatabase db = this.getWritableDatabase()) {
-            ContentValues values = new ContentValues();
+        String where = COL_ACTIVE + " = 1 AND " + COL_FIRE_TIME + " = " + fireTime;
+        if (tag != null) {
+            where += " AND " + COL_TAG + " = " + DatabaseUtils.sqlEscapeString(tag);
+        }
+        return queryAlarm(where + " LIMIT 1");
+    }
 
-            String data = gson.toJson(alarm);
-            Log.i(Constants.TAG, "insert alarm: " + data);
+    private AlarmModel queryAlarm(String where) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = this.getWritableDatabase();
+        AlarmModel alarm = null;
 
-            values.put(COL_DATA, data);
-            values.put(COL_ACTIVE, alarm.getActive());
+        String selectQuery = "SELECT " + COLUMNS + " FROM " + TABLE_NAME + " WHERE " + where;
 
-            return (int) db.insert(TABLE_NAME, null, values);
+        try (Cursor cursor = db.rawQuery(selectQuery, null)) {
+            if (!cursor.moveToFirst()) {
+                return alarm;
+            }
+
+            alarm = readAlarm(cursor);
         } catch (Exception e) {
-            Log.e(Constants.TAG, "Error inserting into DB", e);
-            return 0;
+            Log.e(Constants.TAG, "Error getting alarm where " + where, e);
+        } finally {
+            Metrics.DB_READ.recordSince(start);
+        }
+
+        return alarm;
+    }
+
+    /**
+     * Deletes the alarms being replaced and inserts all alarms in a single transaction, returns
+     * the ids of the inserted ones in the same order. Nothing is written if any statement fails.
+     */
+    int[] insert(List<AlarmModel> alarms, List<AlarmModel> replaced) {
+        int[] ids = new int[alarms.size()];
+
+        long start = System.nanoTime();
+        for (AlarmModel alarm : alarms) {
+            assignNotificationId(alarm);
         }
+        SQLiteDatabase db = this.getWritableDatabase();
+        synchronized (countLock) {
+            int active = 0;
+            db.beginTransaction();
+            try {
+                for (AlarmModel alarm : replaced) {
+                    if (db.delete(TABLE_NAME, COL_ID + " = " + alarm.getId(), null) > 0) {
+                        active -= alarm.getActive();
+                    }
+                }
+
+                ContentValues values = new ContentValues();
+                for (int i = 0; i < alarms.size(); i++) {
+                    AlarmModel alarm = alarms.get(i);
+
+                    values.clear();
+                    putValues(values, alarm);
+
+                    ids[i] = (int) db.insertOrThrow(TABLE_NAME, null, values);
+                    if (alarm.getActive() == 1) {
+                        active++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                Metrics.DB_WRITE.recordSince(start);
+            }
+            adjustActiveCount(active);
+        }
+
+        for (AlarmModel alarm : replaced) {
+            cache.remove(alarm.getId());
+        }
+        for (int i = 0; i < ids.length; i++) {
+            alarms.get(i).setId(ids[i]);
+            cache.put(alarms.get(i));
+            Trace.record(Trace.STORE, ids[i], alarms.get(i).getFireTime());
+        }
+
+        Log.i(Constants.TAG, "inserted " + ids.length + " alarms");
+        return ids;
     }
 
-    void update(AlarmModel alarm) {
+    /**
+     * Writes the alarm back if it still exists. The cache is only updated when a row was written,
+     * under the write lock, so an alarm deleted concurrently doesn't come back.
+     *
+     * @return whether the alarm was written
+     */
+    boolean update(AlarmModel alarm) {
         String where = COL_ID + " = " + alarm.getId();
-        try (SQLiteDatabase db = this.getWritableDatabase()) {
+        long start = System.nanoTime();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
             ContentValues values = new ContentValues();
 
-            String data = gson.toJson(alarm);
-            Log.d(Constants.TAG, "update alarm: " + data);
-
-            values.put(COL_ID, alarm.getId());
-            values.put(COL_DATA, data);
-            values.put(COL_ACTIVE, alarm.getActive());
+            putValues(values, alarm);
 
-            db.update(TABLE_NAME, values, where, null);
+            synchronized (countLock) {
+                if (db.update(TABLE_NAME, values, where, null) > 0) {
+                    cache.put(alarm);
+                    Trace.record(Trace.STORE, alarm.getId(), alarm.getFireTime());
+                    return true;
+                }
+            }
 
         } catch (Exception e) {
             Log.e(Constants.TAG, "Error updating alarm " + alarm, e);
+        } finally {
+            Metrics.DB_WRITE.recordSince(start);
         }
+        return false;
+    }
+
+    /**
+     * Updates all alarms that still exist in a single transaction, like update(AlarmModel).
+     *
+     * @return for each alarm whether it was written
+     */
+    boolean[] update(List<AlarmModel> alarms) {
+        long start = System.nanoTime();
+        boolean[] updated = new boolean[alarms.size()];
+        SQLiteDatabase db = this.getWritableDatabase();
+        synchronized (countLock) {
+            db.beginTransaction();
+            try {
+                ContentValues values = new ContentValues();
+                for (int i = 0; i < alarms.size(); i++) {
+                    AlarmModel alarm = alarms.get(i);
+                    values.clear();
+                    putValues(values, alarm);
+                    updated[i] = db.update(TABLE_NAME, values, COL_ID + " = " + alarm.getId(), null) > 0;
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                Metrics.DB_WRITE.recordSince(start);
+            }
+
+            for (int i = 0; i < alarms.size(); i++) {
+                if (updated[i]) {
+                    AlarmModel alarm = alarms.get(i);
+                    cache.put(alarm);
+                    Trace.record(Trace.STORE, alarm.getId(), alarm.getFireTime());
+                }
+            }
+        }
+        return updated;
     }
 
     void delete(int id) {
         String where = COL_ID + "=" + id;
-        try (SQLiteDatabase db = this.getWritableDatabase()) {
-            db.delete(TABLE_NAME, where, null);
+        long start = System.nanoTime();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            synchronized (countLock) {
+                int deleted = db.delete(TABLE_NAME, where + " AND " + COL_ACTIVE + " = 1", null);
+                if (deleted > 0) {
+                    adjustActiveCount(-deleted);
+                } else {
+                    db.delete(TABLE_NAME, where, null);
+                }
+            }
+            cache.remove(id);
         } catch (Exception e) {
             Log.e(Constants.TAG, "Error deleting alarm with id " + id, e);
+        } finally {
+            Metrics.DB_WRITE.recordSince(start);
+        }
+    }
+
+    /**
+     * Deletes the alarms with the given ids in one transaction. The deleted alarms are returned
+     * with only their id, notification id, tag, schedule type and active flag set.
+     */
+    ArrayList<AlarmModel> deleteAlarms(int[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder where = new StringBuilder(COL_ID).append(" IN (");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                where.append(',');
+            }
+            where.append(ids[i]);
+        }
+        where.append(')');
+        return deleteWhere(where.toString());
+    }
+
+    /**
+     * Like {@link #deleteAlarms(int[])}, for all alarms with the given tag.
+     */
+    ArrayList<AlarmModel> deleteAlarmsByTag(String tag) {
+        return deleteWhere(COL_TAG + " = " + DatabaseUtils.sqlEscapeString(tag));
+    }
+
+    /**
+     * Like {@link #deleteAlarms(int[])}, for all alarms.
+     */
+    ArrayList<AlarmModel> deleteAllAlarms() {
+        return deleteWhere("1");
+    }
+
+    private ArrayList<AlarmModel> deleteWhere(String where) {
+        String selectQuery = "SELECT " + COL_ID + ", " + COL_NOTIFICATION_ID + ", " + COL_TAG + ", "
+                + COL_SCHEDULE_TYPE + ", " + COL_ACTIVE + " FROM " + TABLE_NAME + " WHERE " + where;
+
+        ArrayList<AlarmModel> alarms = new ArrayList<>();
+        long start = System.nanoTime();
+        SQLiteDatabase db = this.getWritableDatabase();
+        synchronized (countLock) {
+            int active = 0;
+            db.beginTransaction();
+            try {
+                try (Cursor cursor = db.rawQuery(selectQuery, null)) {
+                    while (cursor.moveToNext()) {
+                        AlarmModel alarm = new AlarmModel();
+                        alarm.setId(cursor.getInt(0));
+                        alarm.setNotificationId(cursor.getInt(1));
+                        alarm.setTag(cursor.getString(2));
+                        alarm.setScheduleType(cursor.getString(3));
+                        alarm.setActive(cursor.getInt(4));
+                        if (alarm.getActive() == 1) {
+                            active++;
+                        }
+                        alarms.add(alarm);
+                    }
+                }
+                db.delete(TABLE_NAME, where, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                Metrics.DB_WRITE.recordSince(start);
+            }
+            adjustActiveCount(-active);
+        }
+
+        for (AlarmModel alarm : alarms) {
+            cache.remove(alarm.getId());
+        }
+
+        Log.i(Constants.TAG, "deleted " + alarms.size() + " alarms");
+        return alarms;
+    }
+
+    /**
+     * Applies the result of {@link AlarmSync#diff} in a single transaction, inserted alarms get
+     * their ids. Nothing is written if any statement fails. Deletes and updates of alarms that no
+     * longer exist are dropped from the sync. Callers diff and apply under the write lock.
+     */
+    void applySync(AlarmSync sync) {
+        long start = System.nanoTime();
+        for (AlarmModel alarm : sync.inserts) {
+            assignNotificationId(alarm);
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        synchronized (countLock) {
+            int active = 0;
+            db.beginTransaction();
+            try {
+                ContentValues values = new ContentValues();
+                for (Iterator<AlarmModel> it = sync.deletes.iterator(); it.hasNext(); ) {
+                    AlarmModel alarm = it.next();
+                    if (db.delete(TABLE_NAME, COL_ID + " = " + alarm.getId(), null) > 0) {
+                        active -= alarm.getActive();
+                    } else {
+                        it.remove();
+                    }
+                }
+                for (Iterator<AlarmModel> it = sync.updates.iterator(); it.hasNext(); ) {
+                    AlarmModel alarm = it.next();
+                    values.clear();
+                    putValues(values, alarm);
+                    if (db.update(TABLE_NAME, values, COL_ID + " = " + alarm.getId(), null) == 0) {
+                        it.remove();
+                    }
+                }
+                for (AlarmModel alarm : sync.inserts) {
+                    values.clear();
+                    putValues(values, alarm);
+                    alarm.setId((int) db.insertOrThrow(TABLE_NAME, null, values));
+                    active += alarm.getActive();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                Metrics.DB_WRITE.recordSince(start);
+            }
+            adjustActiveCount(active);
+
+            for (AlarmModel alarm : sync.deletes) {
+                cache.remove(alarm.getId());
+            }
+            for (AlarmModel alarm : sync.updates) {
+                cache.put(alarm);
+                Trace.record(Trace.STORE, alarm.getId(), alarm.getFireTime());
+            }
+            for (AlarmModel alarm : sync.inserts) {
+                cache.put(alarm);
+                Trace.record(Trace.STORE, alarm.getId(), alarm.getFireTime());
+            }
+        }
+
+        Log.i(Constants.TAG, "synced alarms: " + sync.inserts.size() + " inserted, " + sync.updates.size()
+                + " updated, " + sync.deletes.size() + " deleted");
+    }
+
+    /**
+     * Notification id for a new or snoozed alarm, also the request code of its PendingIntents.
+     * Unique among the ids handed out so far, also across restarts.
+     */
+    int nextNotificationId() {
+        IdAllocator allocator = notificationIds;
+        if (allocator == null) {
+            synchronized (sequenceLock) {
+                allocator = notificationIds;
+                if (allocator == null) {
+                    allocator = new IdAllocator(readSequenceStart(SEQUENCE_NOTIFICATION_ID), IdAllocator.DEFAULT_BLOCK,
+                            new IdAllocator.Reservation() {
+                                @Override
+                                public void reserve(int limit) {
+                                    writeSequenceLimit(SEQUENCE_NOTIFICATION_ID, limit);
+                                }
+                            });
+                    notificationIds = allocator;
+                }
+            }
+        }
+        return allocator.next();
+    }
+
+    // alarms inserted without a notification id get one, outside of any transaction as the
+    // allocator may write its reservation
+    private void assignNotificationId(AlarmModel alarm) {
+        if (alarm.getNotificationId() == 0) {
+            alarm.setNotificationId(nextNotificationId());
+        }
+    }
+
+    // the persisted limit, or on first use the id after those of existing alarms, which were
+    // derived from the time before
+    private int readSequenceStart(String name) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        long start = DatabaseUtils.longForQuery(db, "SELECT IFNULL((SELECT " + COL_SEQUENCE_LIMIT + " FROM "
+                + SEQUENCE_TABLE_NAME + " WHERE " + COL_SEQUENCE_NAME + " = ?), (SELECT IFNULL(MAX("
+                + COL_NOTIFICATION_ID + "), 0) + 1 FROM " + TABLE_NAME + "))", new String[]{name});
+        return (int) Math.min(start, Integer.MAX_VALUE);
+    }
+
+    private void writeSequenceLimit(String name, int limit) {
+        ContentValues values = new ContentValues();
+        values.put(COL_SEQUENCE_NAME, name);
+        values.put(COL_SEQUENCE_LIMIT, limit);
+        this.getWritableDatabase().insertWithOnConflict(SEQUENCE_TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Lock held by every write that adds or removes alarms. Holding it across a lookup and the
+     * insert it leads to keeps concurrent writers from changing the active alarms in between.
+     */
+    Object getWriteLock() {
+        return countLock;
+    }
+
+    /**
+     * Number of active alarms. Counted once, then kept up to date by inserts and deletes, the
+     * only writes that change it.
+     */
+    int getActiveCount() {
+        synchronized (countLock) {
+            if (activeCount < 0) {
+                SQLiteDatabase db = this.getReadableDatabase();
+                activeCount = (int) DatabaseUtils.queryNumEntries(db, TABLE_NAME, COL_ACTIVE + " = 1", null);
+            }
+            return activeCount;
+        }
+    }
+
+    // callers hold countLock
+    private void adjustActiveCount(int delta) {
+        if (activeCount >= 0) {
+            activeCount += delta;
         }
     }
 
     ArrayList<AlarmModel> getActiveAlarmList() {
-        String selectQuery = "SELECT * FROM " + TABLE_NAME + " WHERE " + COL_ACTIVE + " = 1";
+        synchronized (cache) {
+            // loading under the cache lock so that writes committed meanwhile are applied after the load
+            if (!cache.isLoaded()) {
+                ArrayList<AlarmModel> alarms = queryActiveAlarmList();
+                cache.load(alarms);
+                return alarms;
+            }
+        }
+
+        if (cache.isComplete()) {
+            return cache.getActiveAlarms();
+        }
+        return queryActiveAlarmList();
+    }
+
+    /**
+     * Active alarms with from <= fire time < to, optionally only those with the given tag,
+     * ordered by fire time and paged with offset and limit (0 for no limit).
+     */
+    ArrayList<AlarmModel> getActiveAlarmList(long from, long to, String tag, int offset, int limit) {
+        if (!cache.isLoaded()) {
+            getActiveAlarmList();
+        }
+        if (cache.isComplete()) {
+            return cache.getActiveAlarms(from, to, tag, offset, limit);
+        }
 
+        String where = COL_ACTIVE + " = 1 AND " + COL_FIRE_TIME + " >= " + from + " AND " + COL_FIRE_TIME + " < " + to;
+        if (tag != null) {
+            where += " AND " + COL_TAG + " = " + DatabaseUtils.sqlEscapeString(tag);
+        }
+        String page = limit > 0 ? " LIMIT " + limit + " OFFSET " + offset : " LIMIT -1 OFFSET " + offset;
+        return queryAlarmList(where, page);
+    }
+
+    /**
+     * Active alarms that have an external key, ordered by fire time.
+     */
+    ArrayList<AlarmModel> getExternalKeyAlarms() {
+        return queryAlarmList(COL_ACTIVE + " = 1 AND " + COL_EXTERNAL_KEY + " IS NOT NULL", "");
+    }
+
+    /**
+     * Alarms waiting to fire whose fire time is at or before the given time, oldest first.
+     */
+    ArrayList<AlarmModel> getDueAlarms(long time) {
+        return queryAlarmList(WHERE_PENDING + " AND " + COL_FIRE_TIME + " <= " + time, "");
+    }
+
+    /**
+     * Alarms waiting to fire, ordered by fire time.
+     */
+    ArrayList<AlarmModel> getPendingAlarms() {
+        return queryAlarmList(WHERE_PENDING, "");
+    }
+
+    /**
+     * Number of alarms waiting to fire.
+     */
+    int getPendingCount() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return (int) DatabaseUtils.queryNumEntries(db, TABLE_NAME, WHERE_PENDING, null);
+    }
+
+    /**
+     * Fire time of the first alarm waiting to fire, or -1 when there is none.
+     */
+    long getNextFireTime() {
+        String selectQuery = "SELECT " + COL_FIRE_TIME + " FROM " + TABLE_NAME + " WHERE " + WHERE_PENDING
+                + " ORDER BY " + COL_FIRE_TIME + " LIMIT 1";
+
+        long start = System.nanoTime();
+        SQLiteDatabase db = this.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery(selectQuery, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            Metrics.DB_READ.recordSince(start);
+        }
+    }
+
+    private ArrayList<AlarmModel> queryActiveAlarmList() {
+        return queryAlarmList(COL_ACTIVE + " = 1", "");
+    }
+
+    private ArrayList<AlarmModel> queryAlarmList(String where, String page) {
+        String selectQuery = "SELECT " + COLUMNS + " FROM " + TABLE_NAME + " WHERE " + where
+                + " ORDER BY " + COL_FIRE_TIME + ", " + COL_ID + page;
+
+        long start = System.nanoTime();
         SQLiteDatabase db = this.getWritableDatabase();
         ArrayList<AlarmModel> alarms = new ArrayList<>();
 
@@ -130,22 +771,67 @@ public class AlarmDatabase extends SQLiteOpenHelper implements AutoCloseable {
             }
 
             do {
-                int id = cursor.getInt(0);
-                String data = cursor.getString(1);
-                int active = cursor.getInt(2);
-
-                Log.d(Constants.TAG, "get alarm (list) -> id:" + id + ", active:" + active + ", " + data);
-
-                AlarmModel alarm = gson.fromJson(data, AlarmModel.class);
-                alarm.setId(id);
-                alarm.setActive(active);
-
-                alarms.add(alarm);
+                alarms.add(readAlarm(cursor));
             } while (cursor.moveToNext());
         } catch (Exception e) {
             Log.e(Constants.TAG, "getAlarmList: exception cause " + e.getCause() + " message " + e.getMessage());
+        } finally {
+            Metrics.DB_READ.recordSince(start);
         }
 
         return alarms;
     }
+
+    /**
+     * Queues an event for JS, dropping the oldest ones beyond maxEvents.
+     */
+    void enqueueEvent(AlarmEvents.Event event, int maxEvents) {
+        ContentValues values = new ContentValues();
+        values.put(COL_EVENT_NAME, event.name);
+        values.put(COL_EVENT_ALARM_ID, event.alarmId);
+        values.put(COL_EVENT_NOTIFICATION_ID, event.notificationId);
+        values.put(COL_EVENT_TAG, event.tag);
+        values.put(COL_EVENT_DATA, event.data);
+        values.put(COL_EVENT_TIME, event.time);
+
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                long seq = db.insertOrThrow(EVENT_TABLE_NAME, null, values);
+                db.delete(EVENT_TABLE_NAME, COL_EVENT_SEQ + " <= " + (seq - maxEvents), null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Error queueing event " + event.name, e);
+        }
+    }
+
+    /**
+     * Removes all queued events from the queue and returns them, oldest first.
+     */
+    ArrayList<AlarmEvents.Event> takeEvents() {
+        String selectQuery = "SELECT " + COL_EVENT_NAME + ", " + COL_EVENT_ALARM_ID + ", " + COL_EVENT_NOTIFICATION_ID + ", "
+                + COL_EVENT_TAG + ", " + COL_EVENT_DATA + ", " + COL_EVENT_TIME + " FROM " + EVENT_TABLE_NAME
+                + " ORDER BY " + COL_EVENT_SEQ;
+
+        ArrayList<AlarmEvents.Event> events = new ArrayList<>();
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            try (Cursor cursor = db.rawQuery(selectQuery, null)) {
+                while (cursor.moveToNext()) {
+                    events.add(new AlarmEvents.Event(cursor.getString(0), cursor.getInt(1), cursor.getInt(2),
+                            cursor.getString(3), cursor.getString(4), cursor.getLong(5)));
+                }
+            }
+            db.delete(EVENT_TABLE_NAME, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return events;
+    }
 }
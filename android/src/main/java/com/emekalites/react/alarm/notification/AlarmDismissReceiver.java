@@ -1,27 +1,35 @@
 package com.emekalites.react.alarm.notification;
 
-import android.app.Application;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
-import com.facebook.react.modules.core.DeviceEventManagerModule;
-
 public class AlarmDismissReceiver extends BroadcastReceiver {
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(Context context, final Intent intent) {
+        final Context appContext = context.getApplicationContext();
+        ReceiverExecutor.execute(this, context, "notification dismiss", new ReceiverExecutor.Work() {
+            @Override
+            public void run(ReceiverExecutor.Stages stages) {
+                handleDismiss(appContext, intent, stages);
+            }
+        });
+    }
+
+    private void handleDismiss(Context context, Intent intent, ReceiverExecutor.Stages stages) {
         try {
             int id = intent.getExtras().getInt(Constants.NOTIFICATION_ALARM_ID);
-            if (ANModule.getReactAppContext() != null) {
-                // TODO also send all user-provided args back
-                ANModule.getReactAppContext().getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                        .emit("OnNotificationDismissed", "{\"id\": \"" + id + "\"}");
-            }
+            AlarmModel alarm = AlarmDatabase.getInstance(context).getAlarm(id);
 
-            AlarmUtil alarmUtil = new AlarmUtil((Application) context.getApplicationContext());
+            AlarmUtil alarmUtil = AlarmUtil.getInstance(context);
+            Trace.record(Trace.DISMISS, id, alarm != null ? alarm.getNotificationId() : 0);
             alarmUtil.removeFiredNotification(id);
             alarmUtil.cancelOnceAlarm(id);
+            stages.mark("cancel");
+
+            AlarmEvents.getInstance(context).emit(AlarmEvents.NOTIFICATION_DISMISSED, id, alarm);
+            stages.mark("emit");
         } catch (Exception e) {
             Log.e(Constants.TAG, "Exception when handling notification dismiss: " + e);
         }
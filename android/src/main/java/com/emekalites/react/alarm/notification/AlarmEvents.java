@@ -0,0 +1,157 @@
+package com.emekalites.react.alarm.notification;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+
+/**
+ * Delivers alarm lifecycle events to JS.
+ *
+ * Events are kept in a bounded queue in the database until JS first subscribes through
+ * addEventListener after the bridge attached, since they often happen in a receiver while the
+ * app isn't running or before JS has set up its listeners. The queue is then emitted in one
+ * pass, later events are emitted right away while the bridge is up. Events are always emitted
+ * in the order they happened, anything still queued goes out before a new event.
+ */
+class AlarmEvents {
+
+    static final String NOTIFICATION_OPENED = "OnNotificationOpened";
+    static final String NOTIFICATION_DISMISSED = "OnNotificationDismissed";
+
+    // the oldest events are dropped beyond this
+    private static final int MAX_QUEUED_EVENTS = 100;
+
+    private static AlarmEvents instance;
+
+    static class Event {
+        final String name;
+        final int alarmId;
+        final int notificationId;
+        final String tag;
+        final String data;
+        final long time;
+
+        Event(String name, int alarmId, int notificationId, String tag, String data, long time) {
+            this.name = name;
+            this.alarmId = alarmId;
+            this.notificationId = notificationId;
+            this.tag = tag;
+            this.data = data;
+            this.time = time;
+        }
+
+        WritableMap toMap() {
+            WritableMap map = Arguments.createMap();
+            map.putInt("id", alarmId);
+            map.putInt("notificationId", notificationId);
+            if (tag != null && !tag.equals("")) {
+                map.putString("tag", tag);
+            }
+            if (data != null) {
+                map.putString("data", data);
+            }
+            map.putDouble("time", time);
+            return map;
+        }
+    }
+
+    private final AlarmDatabase alarmDB;
+
+    private ReactContext reactContext;
+
+    // whether the queue was emitted to the current bridge
+    private boolean flushed;
+    // whether events may be waiting in the queue, unknown at first
+    private boolean queued = true;
+
+    private AlarmEvents(Context context) {
+        alarmDB = AlarmDatabase.getInstance(context);
+    }
+
+    static synchronized AlarmEvents getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlarmEvents(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    synchronized void attach(ReactContext reactContext) {
+        this.reactContext = reactContext;
+        flushed = false;
+    }
+
+    synchronized void detach(ReactContext reactContext) {
+        if (this.reactContext == reactContext) {
+            this.reactContext = null;
+            flushed = false;
+        }
+    }
+
+    /**
+     * JS subscribed to an event, on the first subscription to the current bridge the queued
+     * events are emitted.
+     */
+    synchronized void addListener(String name) {
+        if (!flushed && canEmit()) {
+            flushed = true;
+            flush();
+        }
+    }
+
+    /**
+     * Emits an event about the given alarm, or about an alarm that no longer exists when it is
+     * null and only its id is known.
+     */
+    void emit(String name, int alarmId, AlarmModel alarm) {
+        long time = System.currentTimeMillis();
+        if (alarm != null) {
+            emit(new Event(name, alarmId, alarm.getNotificationId(), alarm.getTag(), alarm.getData(), time));
+        } else {
+            emit(new Event(name, alarmId, 0, null, null, time));
+        }
+    }
+
+    private synchronized void emit(Event event) {
+        if (flushed && canEmit()) {
+            if (queued) {
+                flush();
+            }
+            send(event);
+            return;
+        }
+        Log.d(Constants.TAG, "Queueing " + event.name + " for alarm " + event.alarmId);
+        alarmDB.enqueueEvent(event, MAX_QUEUED_EVENTS);
+        queued = true;
+    }
+
+    private void flush() {
+        ArrayList<Event> events = alarmDB.takeEvents();
+        queued = false;
+        if (events.isEmpty()) {
+            return;
+        }
+        Log.i(Constants.TAG, "Emitting " + events.size() + " queued events");
+        for (Event event : events) {
+            send(event);
+        }
+    }
+
+    private boolean canEmit() {
+        return reactContext != null && reactContext.hasActiveCatalystInstance();
+    }
+
+    private void send(Event event) {
+        try {
+            reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(event.name, event.toMap());
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Failed to emit " + event.name, e);
+        }
+    }
+}
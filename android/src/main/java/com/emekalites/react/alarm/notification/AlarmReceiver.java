@@ -1,19 +1,15 @@
 package com.emekalites.react.alarm.notification;
 
-import android.app.Application;
 import android.app.Notification;
-import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
-import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.RingtoneManager;
 import android.net.Uri;
@@ -23,8 +19,8 @@ import android.util.Log;
 import androidx.core.app.NotificationCompat;
 
 import java.util.ArrayList;
-
-import com.facebook.react.modules.core.DeviceEventManagerModule;
+import java.util.Collections;
+import java.util.List;
 
 import static com.emekalites.react.alarm.notification.Constants.NOTIFICATION_ACTION_DISMISS;
 import static com.emekalites.react.alarm.notification.Constants.NOTIFICATION_ACTION_SNOOZE;
@@ -33,40 +29,96 @@ public class AlarmReceiver extends BroadcastReceiver {
 
     private static final long[] DEFAULT_VIBRATE_PATTERN = {0, 250, 250, 250};
 
+    private static final String GROUP_KEY = "rnan_alarm_group";
+
+    // the summary is posted with its own tag so its id can't clash with an alarm notification
+    private static final String SUMMARY_TAG = "rnan_alarm_group_summary";
+    private static final int SUMMARY_NOTIFICATION_ID = 0;
+
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(Context context, final Intent intent) {
         if (intent == null) {
             return;
         }
 
-        Log.d(Constants.TAG, "Received intent URI: " + intent.toUri(0));
-        
-        final AlarmDatabase alarmDB = new AlarmDatabase(context);
-        AlarmUtil alarmUtil = new AlarmUtil((Application) context.getApplicationContext());
+        final long received = System.currentTimeMillis();
+        final Context appContext = context.getApplicationContext();
+        ReceiverExecutor.execute(this, context, "alarm intent", new ReceiverExecutor.Work() {
+            @Override
+            public void run(ReceiverExecutor.Stages stages) {
+                handleIntent(appContext, intent, received, stages);
+            }
+        });
+    }
+
+    private void handleIntent(Context context, Intent intent, long received, ReceiverExecutor.Stages stages) {
+        AlarmDatabase alarmDB = AlarmDatabase.getInstance(context);
+        AlarmUtil alarmUtil = AlarmUtil.getInstance(context);
         NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
 
         String intentType = intent.getExtras().getString("intentType");
-        Log.i(Constants.TAG, "INTENT_TYPE: " + intentType);
 
         if(Constants.ADD_INTENT.equals(intentType)) {
             int id = intent.getExtras().getInt("PendingId");
             AlarmModel alarm = alarmDB.getAlarm(id);
-            sendNotification(context, notificationManager, alarm);
+            if (alarm == null) {
+                Log.w(Constants.TAG, "Alarm " + id + " fired but no longer exists");
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (alarmUtil.isDeliveredEarly(alarm, now)) {
+                Log.i(Constants.TAG, "Alarm " + id + " was already delivered with a group");
+                return;
+            }
+            recordFire(alarm, received);
+
+            List<AlarmModel> alarms = Collections.singletonList(alarm);
+            long window = alarmUtil.getSettings().getCoalesceWindow();
+            if (window > 0) {
+                ArrayList<AlarmModel> due = alarmDB.getDueAlarms(now + window);
+                if (!containsAlarm(due, id)) {
+                    due.add(0, alarm);
+                }
+                alarms = due;
+            }
+            stages.mark("load");
+            deliver(context, notificationManager, alarmUtil, alarms, stages);
+            return;
+        }
+
+        if (Constants.WAKEUP_INTENT.equals(intentType)) {
+            // single wakeup mode: deliver everything that is due, then arm for the next alarm
+            alarmUtil.onWakeup();
+            long window = alarmUtil.getSettings().getCoalesceWindow();
+            ArrayList<AlarmModel> alarms = alarmDB.getDueAlarms(System.currentTimeMillis() + window);
+            Log.i(Constants.TAG, "Wakeup, " + alarms.size() + " alarms due");
+            if (!alarms.isEmpty()) {
+                // the wakeup was armed for the first of them
+                recordFire(alarms.get(0), received);
+            }
+            stages.mark("load");
+            deliver(context, notificationManager, alarmUtil, alarms, stages);
+            alarmUtil.armNextWakeup();
+            stages.mark("arm");
             return;
         }
 
         String action = intent.getAction();
-        Log.i(Constants.TAG, "ACTION: " + action);
 
         int id = intent.getExtras().getInt(Constants.NOTIFICATION_ALARM_ID);
         AlarmModel alarm = alarmDB.getAlarm(id);
-        notificationManager.cancel(alarm.getNotificationId());
+        if (alarm == null) {
+            Log.w(Constants.TAG, "Action for alarm " + id + " that no longer exists");
+            return;
+        }
+        alarmUtil.cancelNotification(notificationManager, alarm);
+        stages.mark("load");
 
         switch (action) {
             case Constants.NOTIFICATION_ACTION_SNOOZE:
                 try {
                     alarmUtil.snoozeAlarm(alarm);
-                    Log.i(Constants.TAG, "alarm snoozed: " + id);
                 } catch (Exception e) {
                     Log.e(Constants.TAG, "Failed to snooze alarm", e);
                 }
@@ -74,13 +126,10 @@ public class AlarmReceiver extends BroadcastReceiver {
 
             case Constants.NOTIFICATION_ACTION_DISMISS:
                 try {
-                    Log.i(Constants.TAG, "Cancel alarm: " + id);
+                    Trace.record(Trace.DISMISS, id, alarm.getNotificationId());
                     alarmUtil.cancelOnceAlarm(id);
 
-                    // emit notification dismissed
-                    // TODO also send all user-provided args back
-                    ANModule.getReactAppContext().getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                        .emit("OnNotificationDismissed", "{\"id\": \"" + id + "\"}");
+                    AlarmEvents.getInstance(context).emit(AlarmEvents.NOTIFICATION_DISMISSED, id, alarm);
                 } catch (Exception e) {
                     Log.e(Constants.TAG, "Failed to dismiss alarm", e);
                 }
@@ -90,206 +139,339 @@ public class AlarmReceiver extends BroadcastReceiver {
                 Log.e(Constants.TAG, "Received unknown action: " + action);
                 break;
         }
+        stages.mark(action);
     }
 
-    private Class<?> getMainActivityClass(Context context) {
-        try {
-            String packageName = context.getPackageName();
-            Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(packageName);
-            String className = launchIntent.getComponent().getClassName();
-            Log.d(Constants.TAG, "main activity classname: " + className);
-            return Class.forName(className);
-        } catch (Exception e) {
-            Log.e(Constants.TAG, "Could not load main activity class", e);
-            return null;
+    private static void recordFire(AlarmModel alarm, long received) {
+        long delay = received - alarm.getFireTime();
+        Trace.record(Trace.FIRE, alarm.getId(), delay);
+        if (delay >= 0) {
+            Metrics.FIRE_DELAY.record(delay);
+        }
+    }
+
+    private static boolean containsAlarm(List<AlarmModel> alarms, int id) {
+        for (AlarmModel alarm : alarms) {
+            if (alarm.getId() == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Posts the notifications of alarms that fire together, as one group when there is more
+     * than one of them, and records them as delivered.
+     */
+    private void deliver(Context context, NotificationManager notificationManager, AlarmUtil alarmUtil, List<AlarmModel> alarms, ReceiverExecutor.Stages stages) {
+        if (alarms.isEmpty()) {
+            return;
+        }
+
+        postNotifications(context, notificationManager, alarms, true);
+        long posted = System.currentTimeMillis();
+        for (AlarmModel alarm : alarms) {
+            // alarms delivered ahead of time with a coalesced group aren't late
+            if (alarm.getFireTime() <= posted) {
+                Metrics.DELIVERY_DELAY.record(posted - alarm.getFireTime());
+            }
+        }
+        stages.mark("notify");
+        alarmUtil.onAlarmsDelivered(alarms);
+        stages.mark("store");
+    }
+
+    /**
+     * Posts the notifications of the given alarms, as one group if there is more than one of them
+     * and grouping is asked for, or else one by one.
+     */
+    static void postNotifications(Context context, NotificationManager notificationManager, List<AlarmModel> alarms, boolean group) {
+        if (group && alarms.size() > 1) {
+            sendGroupedNotifications(context, notificationManager, alarms);
+            return;
+        }
+        for (AlarmModel alarm : alarms) {
+            sendNotification(context, notificationManager, alarm);
         }
     }
 
-    private PendingIntent createOnDismissedIntent(Context context, int alarmId) {
+    private static PendingIntent createOnDismissedIntent(Context context, int alarmId) {
         Intent intent = new Intent(context, AlarmDismissReceiver.class);
         intent.putExtra(Constants.NOTIFICATION_ALARM_ID, alarmId);
         return PendingIntent.getBroadcast(context.getApplicationContext(), alarmId, intent, 0);
     }
 
-    private PendingIntent createPendingIntent(Context context, String action, AlarmModel alarm) {
+    private static PendingIntent createPendingIntent(Context context, String action, AlarmModel alarm) {
         Intent intent = new Intent(context, AlarmReceiver.class);
         intent.setAction(action);
         intent.putExtra(Constants.NOTIFICATION_ALARM_ID, alarm.getId());
         return PendingIntent.getBroadcast(context, alarm.getNotificationId(), intent, PendingIntent.FLAG_UPDATE_CURRENT);
     }
 
-    private void sendNotification(Context context, NotificationManager notificationManager, AlarmModel alarm) {
+    private static void sendNotification(Context context, NotificationManager notificationManager, AlarmModel alarm) {
         try {
-            Class<?> intentClass = getMainActivityClass(context);
-
-            if (intentClass == null) {
-                Log.e(Constants.TAG, "No activity class found for the notification");
-                return;
-            }
-
-            // title
-            String title = alarm.getTitle();
-            if (title == null || title.equals("")) {
-                ApplicationInfo appInfo = context.getApplicationInfo();
-                title = context.getPackageManager().getApplicationLabel(appInfo).toString();
-            }
-
-            // message
-            // TODO move to AlarmModel constructor?
-            String message = alarm.getMessage();
-            if (message == null || message.equals("")) {
-                Log.e(Constants.TAG, "Cannot send to notification centre because there is no 'message' found");
-                return;
-            }
-
-            // channel
-            // TODO move to AlarmModel constructor?
-            String channelID = alarm.getChannel();
-            if (channelID == null || channelID.equals("")) {
-                Log.e(Constants.TAG, "Cannot send to notification centre because there is no 'channel' found");
+            long start = System.nanoTime();
+            NotificationCompat.Builder mBuilder = buildNotification(context, alarm, null);
+            if (mBuilder == null) {
                 return;
             }
+            postNotification(notificationManager, alarm, mBuilder.build(), start);
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Failed to send notification", e);
+        }
+    }
 
-            Resources res = context.getResources();
-            String packageName = context.getPackageName();
-
-            //icon
-            // TODO move to AlarmModel constructor?
-            int smallIconResId;
-            String smallIcon = alarm.getSmallIcon();
-            if (smallIcon == null || smallIcon.equals("")) {
-                smallIcon = "ic_launcher";
+    /**
+     * Posts one child notification per alarm and an InboxStyle summary for all of them. Only the
+     * summary alerts, so the whole group plays a single sound and vibration.
+     */
+    private static void sendGroupedNotifications(Context context, NotificationManager notificationManager, List<AlarmModel> alarms) {
+        NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle();
+        AlarmModel first = null;
+        int count = 0;
+
+        for (AlarmModel alarm : alarms) {
+            try {
+                long start = System.nanoTime();
+                NotificationCompat.Builder mBuilder = buildNotification(context, alarm, GROUP_KEY);
+                if (mBuilder == null) {
+                    continue;
+                }
+                postNotification(notificationManager, alarm, mBuilder.build(), start);
+                inboxStyle.addLine(alarm.getMessage());
+                if (first == null) {
+                    first = alarm;
+                }
+                count++;
+            } catch (Exception e) {
+                Log.e(Constants.TAG, "Failed to send notification", e);
             }
-            smallIconResId = res.getIdentifier(smallIcon, "mipmap", packageName);
+        }
 
-            Intent intent = new Intent(context, intentClass);
-            intent.setAction(Constants.NOTIFICATION_ACTION_CLICK);
-            intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        if (first == null) {
+            return;
+        }
 
-            int alarmId = alarm.getId();
-            intent.putExtra(Constants.NOTIFICATION_ALARM_ID, alarmId);
-            intent.putExtra("data", alarm.getData());
+        try {
+            ApplicationInfo appInfo = context.getApplicationInfo();
+            String title = context.getPackageManager().getApplicationLabel(appInfo).toString();
+            String text = count + " alarms";
 
-            NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(context, channelID)
-                    .setSmallIcon(smallIconResId)
+            NotificationCompat.Builder summaryBuilder = new NotificationCompat.Builder(context, ChannelRegistry.getInstance(context).ensureChannel(first))
+                    .setSmallIcon(getSmallIconResId(context, first))
                     .setContentTitle(title)
-                    .setContentText(message)
-                    .setTicker(alarm.getTicker())
+                    .setContentText(text)
+                    .setStyle(inboxStyle.setBigContentTitle(title).setSummaryText(text))
                     .setPriority(NotificationCompat.PRIORITY_MAX)
-                    .setAutoCancel(alarm.isAutoCancel())
+                    .setAutoCancel(true)
                     .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
                     .setCategory(NotificationCompat.CATEGORY_ALARM)
-                    .setSound(null)
-                    .setDeleteIntent(createOnDismissedIntent(context, alarmId));
-
-            long[] vibrationPattern = DEFAULT_VIBRATE_PATTERN;
-            Long[] pattern = alarm.getVibrationPattern();
-            if (pattern.length > 0) {
-                vibrationPattern = new long[pattern.length];
-                for (int i = 0; i < pattern.length; i++) {
-                    vibrationPattern[i] = pattern[i];
+                    .setGroup(GROUP_KEY)
+                    .setGroupSummary(true)
+                    .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+                    .setSound(null);
+
+            // the channel of the first alarm carries the sound on Oreo and later
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                if (first.isVibrate()) {
+                    summaryBuilder.setVibrate(getVibrationPattern(first));
+                }
+                if (first.isPlaySound()) {
+                    summaryBuilder.setSound(RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM), AudioManager.STREAM_ALARM);
                 }
             }
 
-            // TODO use user-supplied sound if available
-            Uri soundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM);
-
-            // Android >= version Oreo - set channel properties
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                NotificationChannel mChannel = CreateNotificationChannel(channelID, "Alarm Notify", alarm, vibrationPattern, soundUri);
-                notificationManager.createNotificationChannel(mChannel);
-                mBuilder.setChannelId(channelID);
-            } else {
-                // set color
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    String color = alarm.getColor();
-                    if (color != null && !color.equals("")) {
-                        mBuilder.setColor(Color.parseColor(color));
-                    }
-                }
+            ComponentName launchComponent = AlarmUtil.getInstance(context).getLaunchComponent();
+            if (launchComponent != null) {
+                Intent intent = new Intent().setComponent(launchComponent);
+                intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+                summaryBuilder.setContentIntent(PendingIntent.getActivity(context, SUMMARY_NOTIFICATION_ID, intent, PendingIntent.FLAG_UPDATE_CURRENT));
+            }
 
-                // set vibration
-                mBuilder.setVibrate(alarm.isVibrate() ? vibrationPattern : null);
+            notificationManager.notify(SUMMARY_TAG, SUMMARY_NOTIFICATION_ID, summaryBuilder.build());
+            Log.i(Constants.TAG, "Sent grouped notification for " + count + " alarms");
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Failed to send group summary", e);
+        }
+    }
 
-                // set sound
-                if (alarm.isPlaySound()) {
-                    mBuilder.setSound(soundUri, AudioManager.STREAM_ALARM);
-                }
+    /**
+     * @param buildStart System.nanoTime() when building the notification started
+     */
+    private static void postNotification(NotificationManager notificationManager, AlarmModel alarm, Notification notification, long buildStart) {
+        Metrics.NOTIFICATION_BUILD.recordSince(buildStart);
+        long start = System.nanoTime();
+
+        notify(notificationManager, alarm, notification);
+        Metrics.NOTIFICATION_POST.recordSince(start);
+        Trace.record(Trace.DELIVER, alarm.getId(), alarm.getNotificationId());
+    }
+
+    /**
+     * Replaces the notification an alarm has already posted with one built from its current
+     * content, without alerting again.
+     */
+    static void updateNotification(Context context, NotificationManager notificationManager, AlarmModel alarm) {
+        try {
+            NotificationCompat.Builder mBuilder = buildNotification(context, alarm, null);
+            if (mBuilder == null) {
+                return;
             }
+            mBuilder.setOnlyAlertOnce(true);
+            notify(notificationManager, alarm, mBuilder.build());
+        } catch (Exception e) {
+            Log.e(Constants.TAG, "Failed to update notification", e);
+        }
+    }
 
-            int notificationId = alarm.getNotificationId();
-            PendingIntent pendingIntent = PendingIntent.getActivity(context, notificationId, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-            mBuilder.setContentIntent(pendingIntent);
+    // notifications of alarms with a tag are posted with it
+    private static void notify(NotificationManager notificationManager, AlarmModel alarm, Notification notification) {
+        int notificationId = alarm.getNotificationId();
+        String tag = alarm.getTag();
+        if (tag != null && !tag.equals("")) {
+            notificationManager.notify(tag, notificationId, notification);
+        } else {
+            notificationManager.notify(notificationId, notification);
+        }
+    }
 
-            if (alarm.isHasButton()) {
-                PendingIntent pendingDismiss = createPendingIntent(context, NOTIFICATION_ACTION_DISMISS, alarm);
-                NotificationCompat.Action dismissAction = new NotificationCompat.Action(android.R.drawable.ic_lock_idle_alarm, "DISMISS", pendingDismiss);
-                mBuilder.addAction(dismissAction);
+    private static int getSmallIconResId(Context context, AlarmModel alarm) {
+        String smallIcon = alarm.getSmallIcon();
+        if (smallIcon == null || smallIcon.equals("")) {
+            smallIcon = "ic_launcher";
+        }
+        return IconCache.getInstance(context).getMipmapId(smallIcon);
+    }
 
-                PendingIntent pendingSnooze = createPendingIntent(context, NOTIFICATION_ACTION_SNOOZE, alarm);
-                NotificationCompat.Action snoozeAction = new NotificationCompat.Action(R.drawable.ic_snooze, "SNOOZE", pendingSnooze);
-                mBuilder.addAction(snoozeAction);
-            }
+    static long[] getVibrationPattern(AlarmModel alarm) {
+        long[] pattern = alarm.getVibrationPattern();
+        if (pattern != null && pattern.length > 0) {
+            return pattern;
+        }
+        return DEFAULT_VIBRATE_PATTERN;
+    }
 
-            //use big text
-            if (alarm.isUseBigText()) {
-                mBuilder = mBuilder.setStyle(new NotificationCompat.BigTextStyle().bigText(message));
-            }
+    /**
+     * Builds the notification of a single alarm, or returns null when it can't be shown.
+     *
+     * @param group group key when the alarm is delivered as part of a group, or null. Grouped
+     *              notifications leave alerting to the group summary.
+     */
+    private static NotificationCompat.Builder buildNotification(Context context, AlarmModel alarm, String group) {
+        ComponentName launchComponent = AlarmUtil.getInstance(context).getLaunchComponent();
+
+        if (launchComponent == null) {
+            Log.e(Constants.TAG, "No activity found for the notification");
+            return null;
+        }
+
+        // title
+        String title = alarm.getTitle();
+        if (title == null || title.equals("")) {
+            ApplicationInfo appInfo = context.getApplicationInfo();
+            title = context.getPackageManager().getApplicationLabel(appInfo).toString();
+        }
+
+        // message
+        // TODO move to AlarmModel constructor?
+        String message = alarm.getMessage();
+        if (message == null || message.equals("")) {
+            Log.e(Constants.TAG, "Cannot send to notification centre because there is no 'message' found");
+            return null;
+        }
+
+        // channel
+        // TODO move to AlarmModel constructor?
+        String channelID = alarm.getChannel();
+        if (channelID == null || channelID.equals("")) {
+            Log.e(Constants.TAG, "Cannot send to notification centre because there is no 'channel' found");
+            return null;
+        }
+
+        //icon
+        // TODO move to AlarmModel constructor?
+        int smallIconResId = getSmallIconResId(context, alarm);
+
+        Intent intent = new Intent().setComponent(launchComponent);
+        intent.setAction(Constants.NOTIFICATION_ACTION_CLICK);
+        intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
 
-            //large icon
-            String largeIcon = alarm.getLargeIcon();
-            if (largeIcon != null && !largeIcon.equals("") && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                int largeIconResId = res.getIdentifier(largeIcon, "mipmap", packageName);
-                Bitmap largeIconBitmap = BitmapFactory.decodeResource(res, largeIconResId);
-                if (largeIconResId != 0) {
-                    mBuilder.setLargeIcon(largeIconBitmap);
+        int alarmId = alarm.getId();
+        intent.putExtra(Constants.NOTIFICATION_ALARM_ID, alarmId);
+        intent.putExtra("data", alarm.getData());
+
+        NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(context, channelID)
+                .setSmallIcon(smallIconResId)
+                .setContentTitle(title)
+                .setContentText(message)
+                .setTicker(alarm.getTicker())
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setAutoCancel(alarm.isAutoCancel())
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setSound(null)
+                .setDeleteIntent(createOnDismissedIntent(context, alarmId));
+
+        if (group != null) {
+            mBuilder.setGroup(group)
+                    .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY);
+        }
+
+        long[] vibrationPattern = getVibrationPattern(alarm);
+
+        // TODO use user-supplied sound if available
+        Uri soundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM);
+
+        // Android >= version Oreo - set channel properties
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mBuilder.setChannelId(ChannelRegistry.getInstance(context).ensureChannel(alarm));
+        } else {
+            // set color
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                String color = alarm.getColor();
+                if (color != null && !color.equals("")) {
+                    mBuilder.setColor(Color.parseColor(color));
                 }
             }
 
-            // set tag and push notification
-            Notification notification = mBuilder.build();
+            // set vibration and sound, the summary alerts for a group
+            if (group == null) {
+                mBuilder.setVibrate(alarm.isVibrate() ? vibrationPattern : null);
 
-            String tag = alarm.getTag();
-            if (tag != null && !tag.equals("")) {
-                notificationManager.notify(tag, notificationId, notification);
-            } else {
-                notificationManager.notify(notificationId, notification);
+                if (alarm.isPlaySound()) {
+                    mBuilder.setSound(soundUri, AudioManager.STREAM_ALARM);
+                }
             }
-            Log.i(Constants.TAG, "Sent notification with notification id: " + notificationId);
-        } catch (Exception e) {
-            Log.e(Constants.TAG, "Failed to send notification", e);
         }
-    }
 
-    NotificationChannel CreateNotificationChannel(String channelID, CharSequence name, AlarmModel alarm, long[] vibrationPattern, Uri soundUri) {
-        NotificationChannel mChannel = new NotificationChannel(channelID, name, NotificationManager.IMPORTANCE_HIGH);
-        mChannel.enableLights(true);
+        int notificationId = alarm.getNotificationId();
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, notificationId, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        mBuilder.setContentIntent(pendingIntent);
 
-        // set color
-        String color = alarm.getColor();
-        if (color != null && !color.equals("")) {
-            mChannel.setLightColor(Color.parseColor(color));
-        }
+        if (alarm.isHasButton()) {
+            PendingIntent pendingDismiss = createPendingIntent(context, NOTIFICATION_ACTION_DISMISS, alarm);
+            NotificationCompat.Action dismissAction = new NotificationCompat.Action(android.R.drawable.ic_lock_idle_alarm, "DISMISS", pendingDismiss);
+            mBuilder.addAction(dismissAction);
 
-        // set vibration
-        if (alarm.isVibrate()) {
-            mChannel.setVibrationPattern(vibrationPattern);
-            mChannel.enableVibration(true);
+            PendingIntent pendingSnooze = createPendingIntent(context, NOTIFICATION_ACTION_SNOOZE, alarm);
+            NotificationCompat.Action snoozeAction = new NotificationCompat.Action(R.drawable.ic_snooze, "SNOOZE", pendingSnooze);
+            mBuilder.addAction(snoozeAction);
         }
 
-        // set sound
-        if (alarm.isPlaySound()) {
-            AudioAttributes audioAttributes = new AudioAttributes.Builder()
-                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                    .setUsage(AudioAttributes.USAGE_ALARM)
-                    .build();
-            mChannel.setSound(soundUri, audioAttributes);
+        //use big text
+        if (alarm.isUseBigText()) {
+            mBuilder = mBuilder.setStyle(new NotificationCompat.BigTextStyle().bigText(message));
         }
 
-        if (mChannel.canBypassDnd()) {
-            mChannel.setBypassDnd(alarm.isBypassDnd());
+        //large icon
+        String largeIcon = alarm.getLargeIcon();
+        if (largeIcon != null && !largeIcon.equals("") && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            Bitmap largeIconBitmap = IconCache.getInstance(context).getLargeIcon(largeIcon);
+            if (largeIconBitmap != null) {
+                mBuilder.setLargeIcon(largeIconBitmap);
+            }
         }
 
-        return mChannel;
+        return mBuilder;
     }
 }
@@ -0,0 +1,378 @@
+package com.emekalites.react.alarm.notification;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Calendar;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Converts between AlarmModel and the bridge types. Alarms from JS arrive as bundles with the
+ * snake_case keys of scheduleAlarm. They are written straight into a bridge map with the
+ * model's field names as keys, as in the JSON previously produced with Gson, and null values
+ * are left out.
+ */
+class AlarmSerializer {
+
+    private AlarmSerializer() {}
+
+    /**
+     * The alarm has no notification id yet, the store assigns one when inserting it.
+     */
+    static AlarmModel fromBundle(@NonNull Bundle bundle) {
+        AlarmModel alarm = new AlarmModel();
+
+        alarm.setActive(1);
+        alarm.setAutoCancel(bundle.getBoolean("auto_cancel", true));
+        alarm.setChannel(bundle.getString("channel", "my_channel_id"));
+        alarm.setColor(bundle.getString("color", "red"));
+        alarm.setData(bundle.getString("data"));
+        alarm.setInterval(bundle.getString("repeat_interval", "hourly"));
+        alarm.setLargeIcon(bundle.getString("large_icon", ""));
+        alarm.setLoopSound(bundle.getBoolean("loop_sound", false));
+        alarm.setMessage(bundle.getString("message", "My Notification Message"));
+        alarm.setPlaySound(bundle.getBoolean("play_sound", true));
+        alarm.setScheduleType(bundle.getString("schedule_type", "once"));
+        alarm.setSmallIcon(bundle.getString("small_icon", "ic_launcher"));
+        alarm.setSnoozeInterval((int) bundle.getDouble("snooze_interval", 1.0));
+        alarm.setSoundName(bundle.getString("sound_name", null));
+        alarm.setSoundNames(bundle.getString("sound_names", null));
+        alarm.setTag(bundle.getString("tag", ""));
+        alarm.setTicker(bundle.getString("ticker", ""));
+        alarm.setTitle(bundle.getString("title", "My Notification Title"));
+        alarm.setVibrate(bundle.getBoolean("vibrate", true));
+        alarm.setHasButton(bundle.getBoolean("has_button", false));
+        alarm.setUseBigText(bundle.getBoolean("use_big_text", false));
+        alarm.setVolume(bundle.getDouble("volume", 0.5));
+        alarm.setIntervalValue((int) bundle.getDouble("interval_value", 1));
+        alarm.setBypassDnd(bundle.getBoolean("bypass_dnd", false));
+
+        alarm.setVibrationPattern(parseVibrationPattern(bundle.getString("vibration_pattern")));
+
+        String externalKey = bundle.getString("external_key");
+        if (externalKey != null && !externalKey.equals("")) {
+            alarm.setExternalKey(externalKey);
+        }
+
+        String zoneId = bundle.getString("time_zone");
+        if (zoneId != null && !zoneId.equals("")) {
+            if (!TimeZone.getTimeZone(zoneId).getID().equals(zoneId)) {
+                throw new IllegalArgumentException("Unknown time zone: " + zoneId);
+            }
+            alarm.setTimeZone(zoneId);
+        }
+
+        // epoch millis, or the dd-MM-yyyy HH:mm:ss wall clock time of earlier versions
+        Object fireDate = bundle.get("fire_date");
+        if (fireDate instanceof Number) {
+            alarm.setFireTime(toWholeSeconds(((Number) fireDate).longValue()));
+        } else if (fireDate instanceof String) {
+            alarm.setFireTime(AlarmModel.parseFireDate((String) fireDate, alarm.getZone()));
+        } else {
+            throw new IllegalArgumentException("Fire date is missing");
+        }
+        alarm.setRequestedFireTime(alarm.getFireTime());
+
+        if (alarm.getScheduleType().equals("repeat")) {
+            setRecurrence(alarm, bundle);
+        }
+        return alarm;
+    }
+
+    /**
+     * Applies the keys present in a partial bundle with the keys of scheduleAlarm to an alarm,
+     * the others keep their value. A fire_date string is read in the alarm's zone once a
+     * time_zone in the same bundle has been applied.
+     */
+    static void applyPatch(AlarmModel alarm, @NonNull Bundle patch) {
+        if (patch.containsKey("auto_cancel")) {
+            alarm.setAutoCancel(patch.getBoolean("auto_cancel", alarm.isAutoCancel()));
+        }
+        if (patch.containsKey("channel")) {
+            alarm.setChannel(patch.getString("channel", alarm.getChannel()));
+        }
+        if (patch.containsKey("color")) {
+            alarm.setColor(patch.getString("color", alarm.getColor()));
+        }
+        if (patch.containsKey("data")) {
+            alarm.setData(patch.getString("data"));
+        }
+        if (patch.containsKey("repeat_interval")) {
+            alarm.setInterval(patch.getString("repeat_interval", alarm.getInterval()));
+        }
+        if (patch.containsKey("large_icon")) {
+            alarm.setLargeIcon(patch.getString("large_icon", alarm.getLargeIcon()));
+        }
+        if (patch.containsKey("loop_sound")) {
+            alarm.setLoopSound(patch.getBoolean("loop_sound", alarm.isLoopSound()));
+        }
+        if (patch.containsKey("message")) {
+            alarm.setMessage(patch.getString("message", alarm.getMessage()));
+        }
+        if (patch.containsKey("play_sound")) {
+            alarm.setPlaySound(patch.getBoolean("play_sound", alarm.isPlaySound()));
+        }
+        if (patch.containsKey("schedule_type")) {
+            alarm.setScheduleType(patch.getString("schedule_type", alarm.getScheduleType()));
+        }
+        if (patch.containsKey("small_icon")) {
+            alarm.setSmallIcon(patch.getString("small_icon", alarm.getSmallIcon()));
+        }
+        if (patch.containsKey("snooze_interval")) {
+            alarm.setSnoozeInterval((int) patch.getDouble("snooze_interval", alarm.getSnoozeInterval()));
+        }
+        if (patch.containsKey("sound_name")) {
+            alarm.setSoundName(patch.getString("sound_name"));
+        }
+        if (patch.containsKey("sound_names")) {
+            alarm.setSoundNames(patch.getString("sound_names"));
+        }
+        if (patch.containsKey("tag")) {
+            alarm.setTag(patch.getString("tag", ""));
+        }
+        if (patch.containsKey("ticker")) {
+            alarm.setTicker(patch.getString("ticker", alarm.getTicker()));
+        }
+        if (patch.containsKey("title")) {
+            alarm.setTitle(patch.getString("title", alarm.getTitle()));
+        }
+        if (patch.containsKey("vibrate")) {
+            alarm.setVibrate(patch.getBoolean("vibrate", alarm.isVibrate()));
+        }
+        if (patch.containsKey("has_button")) {
+            alarm.setHasButton(patch.getBoolean("has_button", alarm.isHasButton()));
+        }
+        if (patch.containsKey("use_big_text")) {
+            alarm.setUseBigText(patch.getBoolean("use_big_text", alarm.isUseBigText()));
+        }
+        if (patch.containsKey("volume")) {
+            alarm.setVolume(patch.getDouble("volume", alarm.getVolume()));
+        }
+        if (patch.containsKey("interval_value")) {
+            alarm.setIntervalValue((int) patch.getDouble("interval_value", alarm.getIntervalValue()));
+        }
+        if (patch.containsKey("bypass_dnd")) {
+            alarm.setBypassDnd(patch.getBoolean("bypass_dnd", alarm.isBypassDnd()));
+        }
+        if (patch.containsKey("vibration_pattern")) {
+            String vibrationPattern = patch.getString("vibration_pattern");
+            alarm.setVibrationPattern(vibrationPattern != null ? parseVibrationPattern(vibrationPattern) : null);
+        }
+        if (patch.containsKey("external_key")) {
+            String externalKey = patch.getString("external_key");
+            alarm.setExternalKey(externalKey != null && !externalKey.equals("") ? externalKey : null);
+        }
+
+        if (patch.containsKey("time_zone")) {
+            String zoneId = patch.getString("time_zone");
+            if (zoneId != null && !zoneId.equals("") && !TimeZone.getTimeZone(zoneId).getID().equals(zoneId)) {
+                throw new IllegalArgumentException("Unknown time zone: " + zoneId);
+            }
+            alarm.setTimeZone(zoneId != null && !zoneId.equals("") ? zoneId : null);
+        }
+
+        Object fireDate = patch.get("fire_date");
+        if (fireDate != null) {
+            if (fireDate instanceof Number) {
+                alarm.setFireTime(toWholeSeconds(((Number) fireDate).longValue()));
+            } else {
+                alarm.setFireTime(AlarmModel.parseFireDate(fireDate.toString(), alarm.getZone()));
+            }
+            alarm.setRequestedFireTime(alarm.getFireTime());
+        }
+
+        if (alarm.getScheduleType().equals("repeat")) {
+            setRecurrence(alarm, patch);
+        } else {
+            // a once alarm has no rule, one set again starts from scratch
+            alarm.setWeekdays(0);
+            alarm.setMonthDay(0);
+            alarm.setMonthDayDerived(false);
+            alarm.setRepeatUntil(0);
+            alarm.setRepeatCount(0);
+        }
+    }
+
+    // applies the repeat_* keys present in the bundle
+    private static void setRecurrence(AlarmModel alarm, Bundle bundle) {
+        String interval = alarm.getInterval();
+        if (!Recurrence.isSupported(interval)) {
+            throw new IllegalArgumentException("Unsupported repeat interval: " + interval);
+        }
+
+        String weekdays = bundle.getString("repeat_weekdays");
+        if (weekdays != null) {
+            int mask = 0;
+            if (!weekdays.equals("")) {
+                for (String value : weekdays.replaceAll("\\s+","").split(",")) {
+                    int day = Integer.parseInt(value);
+                    if (day < 0 || day > 6) {
+                        throw new IllegalArgumentException("Weekdays should be between 0 (Sunday) and 6: " + weekdays);
+                    }
+                    mask |= 1 << day;
+                }
+            }
+            alarm.setWeekdays(mask);
+        }
+
+        boolean monthDayGiven = bundle.containsKey("repeat_month_day");
+        int monthDay = monthDayGiven ? (int) bundle.getDouble("repeat_month_day") : alarm.getMonthDay();
+        if (monthDay < Recurrence.LAST_DAY_OF_MONTH || monthDay > 31) {
+            throw new IllegalArgumentException("Month day should be between 1 and 31, or -1 for the last day: " + monthDay);
+        }
+        // a day taken from the fire date follows a new fire date, a given one is kept
+        boolean derived = !monthDayGiven && alarm.isMonthDayDerived();
+        if ((monthDay == 0 || derived && bundle.containsKey("fire_date"))
+                && (Recurrence.MONTHLY.equals(interval) || Recurrence.YEARLY.equals(interval))) {
+            // keeps the day when a shorter month moved an occurrence to its last day
+            monthDay = alarm.getAlarmDateTime().get(Calendar.DAY_OF_MONTH);
+            derived = true;
+        }
+        alarm.setMonthDay(monthDay);
+        alarm.setMonthDayDerived(derived);
+
+        alarm.setRepeatUntil((long) bundle.getDouble("repeat_until", alarm.getRepeatUntil()));
+        alarm.setRepeatCount((int) bundle.getDouble("repeat_count", alarm.getRepeatCount()));
+    }
+
+    /**
+     * Channel settings only, as given to createChannels. Defaults are the same as in fromBundle
+     * so that a pre-created channel matches the one alarms ask for.
+     */
+    static AlarmModel channelFromBundle(@NonNull Bundle bundle) {
+        String channel = bundle.getString("channel");
+        if (channel == null || channel.equals("")) {
+            throw new IllegalArgumentException("channel is required");
+        }
+
+        AlarmModel alarm = new AlarmModel();
+        alarm.setChannel(channel);
+        alarm.setColor(bundle.getString("color", "red"));
+        alarm.setPlaySound(bundle.getBoolean("play_sound", true));
+        alarm.setVibrate(bundle.getBoolean("vibrate", true));
+        alarm.setBypassDnd(bundle.getBoolean("bypass_dnd", false));
+        if (bundle.containsKey("vibration_pattern")) {
+            alarm.setVibrationPattern(parseVibrationPattern(bundle.getString("vibration_pattern")));
+        }
+        return alarm;
+    }
+
+    // fire times are whole seconds, so alarms for the same second have the same fire time
+    private static long toWholeSeconds(long millis) {
+        return millis - millis % 1000;
+    }
+
+    private static long[] parseVibrationPattern(String vibrationPattern) {
+        String[] values = vibrationPattern.replaceAll("\\s+","").split(",");
+        long[] array = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            array[i] = Long.parseLong(values[i]);
+        }
+        return array;
+    }
+
+    /**
+     * @param fields keys to include, or null for all of them
+     */
+    static WritableMap toMap(AlarmModel alarm, Set<String> fields) {
+        WritableMap map = Arguments.createMap();
+
+        putInt(map, fields, "id", alarm.getId());
+        putDouble(map, fields, "fireTime", alarm.getFireTime());
+        putString(map, fields, "timeZone", alarm.getTimeZone());
+        if (has(fields, "second") || has(fields, "minute") || has(fields, "hour")
+                || has(fields, "day") || has(fields, "month") || has(fields, "year")) {
+            // wall clock fields of earlier versions, in the alarm's zone
+            Calendar calendar = alarm.getAlarmDateTime();
+            putInt(map, fields, "second", calendar.get(Calendar.SECOND));
+            putInt(map, fields, "minute", calendar.get(Calendar.MINUTE));
+            putInt(map, fields, "hour", calendar.get(Calendar.HOUR_OF_DAY));
+            putInt(map, fields, "day", calendar.get(Calendar.DAY_OF_MONTH));
+            putInt(map, fields, "month", calendar.get(Calendar.MONTH) + 1);
+            putInt(map, fields, "year", calendar.get(Calendar.YEAR));
+        }
+        putInt(map, fields, "notificationId", alarm.getNotificationId());
+        putString(map, fields, "title", alarm.getTitle());
+        putString(map, fields, "message", alarm.getMessage());
+        putString(map, fields, "channel", alarm.getChannel());
+        putString(map, fields, "ticker", alarm.getTicker());
+        putBoolean(map, fields, "autoCancel", alarm.isAutoCancel());
+        putBoolean(map, fields, "vibrate", alarm.isVibrate());
+        if (has(fields, "vibrationPattern") && alarm.getVibrationPattern() != null) {
+            WritableArray pattern = Arguments.createArray();
+            for (long value : alarm.getVibrationPattern()) {
+                pattern.pushDouble(value);
+            }
+            map.putArray("vibrationPattern", pattern);
+        }
+        putString(map, fields, "smallIcon", alarm.getSmallIcon());
+        putString(map, fields, "largeIcon", alarm.getLargeIcon());
+        putBoolean(map, fields, "playSound", alarm.isPlaySound());
+        putString(map, fields, "soundName", alarm.getSoundName());
+        putString(map, fields, "soundNames", alarm.getSoundNames());
+        putString(map, fields, "color", alarm.getColor());
+        putString(map, fields, "scheduleType", alarm.getScheduleType());
+        putString(map, fields, "interval", alarm.getInterval());
+        putInt(map, fields, "intervalValue", alarm.getIntervalValue());
+        if (has(fields, "weekdays")) {
+            WritableArray weekdays = Arguments.createArray();
+            for (int day = 0; day < 7; day++) {
+                if ((alarm.getWeekdays() & (1 << day)) != 0) {
+                    weekdays.pushInt(day);
+                }
+            }
+            map.putArray("weekdays", weekdays);
+        }
+        putInt(map, fields, "monthDay", alarm.getMonthDay());
+        putDouble(map, fields, "repeatUntil", alarm.getRepeatUntil());
+        putInt(map, fields, "repeatCount", alarm.getRepeatCount());
+        putInt(map, fields, "occurrences", alarm.getOccurrences());
+        putInt(map, fields, "snoozeInterval", alarm.getSnoozeInterval());
+        putString(map, fields, "tag", alarm.getTag());
+        putString(map, fields, "externalKey", alarm.getExternalKey());
+        putString(map, fields, "data", alarm.getData());
+        putBoolean(map, fields, "loopSound", alarm.isLoopSound());
+        putBoolean(map, fields, "useBigText", alarm.isUseBigText());
+        putBoolean(map, fields, "hasButton", alarm.isHasButton());
+        putDouble(map, fields, "volume", alarm.getVolume());
+        putBoolean(map, fields, "bypassDnd", alarm.isBypassDnd());
+        putInt(map, fields, "active", alarm.getActive());
+        putBoolean(map, fields, "delivered", alarm.isDelivered());
+
+        return map;
+    }
+
+    private static boolean has(Set<String> fields, String key) {
+        return fields == null || fields.contains(key);
+    }
+
+    private static void putInt(WritableMap map, Set<String> fields, String key, int value) {
+        if (has(fields, key)) {
+            map.putInt(key, value);
+        }
+    }
+
+    private static void putDouble(WritableMap map, Set<String> fields, String key, double value) {
+        if (has(fields, key)) {
+            map.putDouble(key, value);
+        }
+    }
+
+    private static void putBoolean(WritableMap map, Set<String> fields, String key, boolean value) {
+        if (has(fields, key)) {
+            map.putBoolean(key, value);
+        }
+    }
+
+    private static void putString(WritableMap map, Set<String> fields, String key, String value) {
+        if (value != null && has(fields, key)) {
+            map.putString(key, value);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.emekalites.react.alarm.notification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Module options set from JS with configure(). They are persisted because the receivers
+ * usually run in a process where JS never started.
+ */
+class AlarmSettings {
+
+    private static final String PREFS_NAME = "rnan_settings";
+
+    private static final String KEY_SCHEDULER_MODE = "scheduler_mode";
+    private static final String KEY_COALESCE_WINDOW = "coalesce_window";
+    private static final String KEY_MAIN_ACTIVITY = "main_activity";
+    private static final String KEY_MISSED_ALARM_POLICY = "missed_alarm_policy";
+    private static final String KEY_TRACE_LEVEL = "trace_level";
+
+    private final SharedPreferences prefs;
+
+    AlarmSettings(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    String getSchedulerMode() {
+        return prefs.getString(KEY_SCHEDULER_MODE, Constants.SCHEDULER_PER_ALARM);
+    }
+
+    void setSchedulerMode(String mode) {
+        prefs.edit().putString(KEY_SCHEDULER_MODE, mode).apply();
+    }
+
+    boolean isSingleWakeup() {
+        return Constants.SCHEDULER_SINGLE_WAKEUP.equals(getSchedulerMode());
+    }
+
+    /**
+     * Alarms due within this many millis of a firing alarm are delivered together with it as one
+     * notification group. 0 turns coalescing off.
+     */
+    long getCoalesceWindow() {
+        return prefs.getLong(KEY_COALESCE_WINDOW, 0);
+    }
+
+    void setCoalesceWindow(long window) {
+        prefs.edit().putLong(KEY_COALESCE_WINDOW, window).apply();
+    }
+
+    /**
+     * Class name of the activity opened from notifications, null for the launcher activity.
+     */
+    String getMainActivity() {
+        return prefs.getString(KEY_MAIN_ACTIVITY, null);
+    }
+
+    void setMainActivity(String className) {
+        if (className == null) {
+            prefs.edit().remove(KEY_MAIN_ACTIVITY).apply();
+        } else {
+            prefs.edit().putString(KEY_MAIN_ACTIVITY, className).apply();
+        }
+    }
+
+    String getMissedAlarmPolicy() {
+        return prefs.getString(KEY_MISSED_ALARM_POLICY, Constants.MISSED_INDIVIDUAL);
+    }
+
+    void setMissedAlarmPolicy(String policy) {
+        prefs.edit().putString(KEY_MISSED_ALARM_POLICY, policy).apply();
+    }
+
+    String getTraceLevel() {
+        return prefs.getString(KEY_TRACE_LEVEL, Trace.LEVEL_EVENTS);
+    }
+
+    void setTraceLevel(String level) {
+        prefs.edit().putString(KEY_TRACE_LEVEL, level).apply();
+    }
+}
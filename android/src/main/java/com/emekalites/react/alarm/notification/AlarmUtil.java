@@ -1,7 +1,6 @@
 package com.emekalites.react.alarm.notification;
 
 import android.app.AlarmManager;
-import android.app.Application;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.ComponentName;
@@ -9,29 +8,51 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.Bundle;
+import android.service.notification.StatusBarNotification;
 import android.util.Log;
-import android.widget.Toast;
-
-import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.bridge.WritableNativeMap;
-
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
 
 import static com.emekalites.react.alarm.notification.Constants.ADD_INTENT;
 
 class AlarmUtil {
 
+    private static AlarmUtil instance;
+
+    // request code of the single wakeup PendingIntent, its action keeps it apart from the per alarm ones
+    private static final int WAKEUP_REQUEST_CODE = 0;
+
+    // an alarm firing this much before its occurrence was already delivered with a group
+    private static final long EARLY_TOLERANCE = 1000;
+
     private final Context context;
     private final AlarmDatabase alarmDB;
+    private final AlarmSettings settings;
+
+    // fire time the wakeup is currently registered for, -1 for none
+    private long armedWakeup = -1;
+
+    // activity opened from notifications, resolved on first use
+    private ComponentName launchComponent;
 
-    AlarmUtil(Application context) {
+    // state the boot receiver was last set to, null until checked
+    private Boolean bootReceiverEnabled;
+
+    private AlarmUtil(Context context) {
         this.context = context;
-        alarmDB =  new AlarmDatabase(context);
+        alarmDB = AlarmDatabase.getInstance(context);
+        settings = new AlarmSettings(context);
+        Trace.setLevel(settings.getTraceLevel());
+    }
+
+    static synchronized AlarmUtil getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlarmUtil(context.getApplicationContext());
+        }
+        return instance;
     }
 
     private AlarmManager getAlarmManager() {
@@ -42,123 +63,449 @@ class AlarmUtil {
         return (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
     }
 
-    boolean checkAlarm(ArrayList<AlarmModel> alarms, AlarmModel alarm) {
-        for (AlarmModel aAlarm : alarms) {
-            if (aAlarm.isSameTime(alarm) && aAlarm.getActive() == 1) {
-                Toast.makeText(context, "You have already set this Alarm", Toast.LENGTH_SHORT).show();
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Returns the active alarm set for the same time as the given one, or null.
+     * With scopeByTag only alarms carrying the same tag count as duplicates. Callers hold the
+     * store's write lock until the alarm is inserted.
+     */
+    private AlarmModel checkAlarm(AlarmModel alarm, boolean scopeByTag) {
+        return alarmDB.findDuplicate(alarm.getFireTime(), scopeByTag ? alarm.getTag() : null);
     }
 
-    void setBootReceiver() {
-        ArrayList<AlarmModel> alarms = alarmDB.getActiveAlarmList();
-        if (alarms.size() > 0) {
+    /**
+     * Enables the boot receiver while there are active alarms. PackageManager is only called
+     * when the number of active alarms crosses zero.
+     */
+    synchronized void setBootReceiver() {
+        boolean enable = alarmDB.getActiveCount() > 0;
+        if (bootReceiverEnabled != null && bootReceiverEnabled == enable) {
+            return;
+        }
+
+        if (enable) {
             enableBootReceiver(context);
         } else {
             disableBootReceiver(context);
         }
+        bootReceiverEnabled = enable;
     }
 
-    void setAlarm(AlarmModel alarm) {
-        Log.i(Constants.TAG, "Set alarm " + alarm);
+    AlarmSettings getSettings() {
+        return settings;
+    }
 
-        Calendar calendar = alarm.getAlarmDateTime();
-        int notificationId = alarm.getNotificationId();
+    /**
+     * Activity opened when a notification is clicked: the one set with configure(), otherwise the
+     * launcher activity of the app. Resolved once per process, null if there is none.
+     */
+    synchronized ComponentName getLaunchComponent() {
+        if (launchComponent == null) {
+            String className = settings.getMainActivity();
+            if (className != null) {
+                launchComponent = new ComponentName(context, className);
+            } else {
+                Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+                if (launchIntent != null) {
+                    launchComponent = launchIntent.getComponent();
+                }
+            }
+            Log.d(Constants.TAG, "main activity: " + launchComponent);
+        }
+        return launchComponent;
+    }
 
-        Intent intent = new Intent(context, AlarmReceiver.class);
-        intent.putExtra("intentType", ADD_INTENT);
-        intent.putExtra("PendingId", alarm.getId());
+    /**
+     * @param className fully qualified activity class name, or one starting with a dot relative to
+     *                  the package name. Null goes back to the launcher activity.
+     */
+    synchronized void setMainActivity(String className) throws PackageManager.NameNotFoundException {
+        if (className != null && className.startsWith(".")) {
+            className = context.getPackageName() + className;
+        }
+        if (className != null) {
+            // fails for activities that aren't declared in the manifest
+            context.getPackageManager().getActivityInfo(new ComponentName(context, className), 0);
+        }
+        settings.setMainActivity(className);
+        launchComponent = null;
+    }
 
-        PendingIntent alarmIntent = PendingIntent.getBroadcast(context, notificationId, intent, 0);
-        AlarmManager alarmManager = this.getAlarmManager();
+    /**
+     * Applies each alarm's duplicate policy against the active alarms and the alarms before it
+     * in the batch, stores the remaining ones in place of the alarms they replace and arms them.
+     * The check and the insert run under the store's write lock, so alarms scheduled at the same
+     * time from another thread can't both pass the check.
+     *
+     * @return ids in the order of the alarms, 0 for the ones skipped as duplicates
+     */
+    int[] scheduleAlarms(AlarmModel[] alarms, String[] policies, boolean[] scopeByTag) {
+        int count = alarms.length;
+        boolean[] skipped = new boolean[count];
+        ArrayList<AlarmModel> accepted = new ArrayList<>(count);
+        ArrayList<AlarmModel> replaced = new ArrayList<>();
+        int[] insertedIds;
+
+        synchronized (alarmDB.getWriteLock()) {
+            HashMap<Long, ArrayList<Integer>> batchByFireTime = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                AlarmModel alarm = alarms[i];
+                ArrayList<Integer> sameTime = batchByFireTime.get(alarm.getFireTime());
+                if (sameTime == null) {
+                    sameTime = new ArrayList<>();
+                    batchByFireTime.put(alarm.getFireTime(), sameTime);
+                }
 
-        String scheduleType = alarm.getScheduleType();
-        switch(scheduleType) {
-            case "once":
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), alarmIntent);
-                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-                    alarmManager.setExact(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), alarmIntent);
-                } else {
-                    alarmManager.set(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), alarmIntent);
+                if (!Constants.DUPLICATE_ALLOW.equals(policies[i])) {
+                    boolean reject = Constants.DUPLICATE_REJECT.equals(policies[i]);
+
+                    for (int j : sameTime) {
+                        if (!skipped[j] && (!scopeByTag[i] || alarm.getTag().equals(alarms[j].getTag()))) {
+                            if (reject) {
+                                skipped[i] = true;
+                                break;
+                            }
+                            skipped[j] = true;
+                        }
+                    }
+
+                    AlarmModel duplicate = skipped[i] ? null : checkAlarm(alarm, scopeByTag[i]);
+                    if (duplicate != null) {
+                        if (reject) {
+                            skipped[i] = true;
+                        } else {
+                            replaced.add(duplicate);
+                        }
+                    }
                 }
-                break;
-            
-            case "repeat":
-                long interval = this.getInterval(alarm.getInterval(), alarm.getIntervalValue());
-                alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), interval, alarmIntent);
-                break;
+                sameTime.add(i);
+            }
 
-            default:
-                Log.w(Constants.TAG, "Schedule type should either be once or repeat");
-                return;
+            for (int i = 0; i < count; i++) {
+                if (!skipped[i]) {
+                    accepted.add(alarms[i]);
+                }
+            }
+            insertedIds = alarmDB.insert(accepted, replaced);
         }
 
+        setAlarms(accepted, replaced);
+
+        int[] ids = new int[count];
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            if (!skipped[i]) {
+                ids[i] = insertedIds[next++];
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Registers all alarms with AlarmManager and updates the boot receiver once for the whole batch.
+     * Called once the alarms are stored, the notifications and registrations of the alarms they
+     * replaced, already deleted in the same transaction, are removed first.
+     */
+    private void setAlarms(List<AlarmModel> alarms, List<AlarmModel> replaced) {
+        long start = System.nanoTime();
+        boolean singleWakeup = settings.isSingleWakeup();
+        NotificationManager notificationManager = this.getNotificationManager();
+        for (AlarmModel alarm : replaced) {
+            Trace.record(Trace.CANCEL, alarm.getId(), alarm.getNotificationId());
+            cancelNotification(notificationManager, alarm);
+            if (!singleWakeup) {
+                cancelAlarmIntent(alarm.getNotificationId());
+            }
+        }
+        for (AlarmModel alarm : alarms) {
+            Trace.record(Trace.SCHEDULE, alarm.getId(), alarm.getFireTime());
+        }
+        if (singleWakeup) {
+            armNextWakeup();
+        } else {
+            for (AlarmModel alarm : alarms) {
+                armAlarm(alarm);
+            }
+        }
         this.setBootReceiver();
+        Metrics.SET_ALARM.recordSince(start);
     }
 
-    void snoozeAlarm(AlarmModel alarm) {
-        Log.i(Constants.TAG, "Snooze alarm: " + alarm.toString());
+    /**
+     * Number of alarms currently registered with AlarmManager: one per pending alarm, or the
+     * single wakeup when there is any.
+     */
+    int getRegistrationCount() {
+        int pending = alarmDB.getPendingCount();
+        if (settings.isSingleWakeup()) {
+            return pending > 0 ? 1 : 0;
+        }
+        return pending;
+    }
+
+    /**
+     * Registers all pending alarms again after a reboot, in one pass and with a single update of
+     * the boot receiver. Once alarms that came due while the device was off are caught up on
+     * according to the missed alarm policy. Repeating alarms skip the occurrences they missed
+     * and go on from their next one, or are marked as delivered when their rule has ended.
+     */
+    synchronized void rescheduleAll(ReceiverExecutor.Stages stages) {
+        ArrayList<AlarmModel> alarms = alarmDB.getPendingAlarms();
+        stages.mark("load");
+
+        long now = System.currentTimeMillis();
+        boolean singleWakeup = settings.isSingleWakeup();
+        ArrayList<AlarmModel> missed = new ArrayList<>();
+        ArrayList<AlarmModel> movedOn = new ArrayList<>();
+        ArrayList<AlarmModel> arm = new ArrayList<>(alarms.size());
+        for (AlarmModel alarm : alarms) {
+            if (alarm.getFireTime() > now) {
+                arm.add(alarm);
+            } else if (!"repeat".equals(alarm.getScheduleType())) {
+                missed.add(alarm);
+            } else {
+                if (!Recurrence.catchUp(alarm, now)) {
+                    alarm.setDelivered(true);
+                }
+                movedOn.add(alarm);
+            }
+        }
+
+        if (!movedOn.isEmpty()) {
+            boolean[] updated = alarmDB.update(movedOn);
+            for (int i = 0; i < movedOn.size(); i++) {
+                if (updated[i] && !movedOn.get(i).isDelivered()) {
+                    arm.add(movedOn.get(i));
+                }
+            }
+            stages.mark("skip missed");
+        }
+
+        if (!singleWakeup) {
+            for (AlarmModel alarm : arm) {
+                armAlarm(alarm);
+            }
+        }
+        stages.mark("arm");
+        Trace.record(Trace.BOOT_REARM, alarms.size(), missed.size());
+
+        if (!missed.isEmpty()) {
+            String policy = settings.getMissedAlarmPolicy();
+            Log.i(Constants.TAG, missed.size() + " alarms missed while off, policy: " + policy);
+            switch (policy) {
+                case Constants.MISSED_DIGEST:
+                    AlarmReceiver.postNotifications(context, getNotificationManager(), missed, true);
+                    break;
+
+                case Constants.MISSED_INDIVIDUAL:
+                    AlarmReceiver.postNotifications(context, getNotificationManager(), missed, false);
+                    break;
+
+                case Constants.MISSED_DROP:
+                default:
+                    // only marked as delivered
+                    break;
+            }
+            onAlarmsDelivered(missed);
+            stages.mark("catch-up");
+        }
+
+        if (singleWakeup) {
+            armNextWakeup();
+        }
+        setBootReceiver();
+        stages.mark("boot receiver");
+    }
+
+    /**
+     * Switches between one PendingIntent per alarm and a single wakeup for the next due alarm,
+     * moving the registrations of all pending alarms over to the new mode.
+     */
+    synchronized void setSchedulerMode(String mode) {
+        if (mode.equals(settings.getSchedulerMode())) {
+            return;
+        }
+        settings.setSchedulerMode(mode);
+
+        Log.i(Constants.TAG, "Scheduler mode: " + mode);
+
+        ArrayList<AlarmModel> alarms = alarmDB.getPendingAlarms();
+        if (settings.isSingleWakeup()) {
+            for (AlarmModel alarm : alarms) {
+                cancelAlarmIntent(alarm.getNotificationId());
+            }
+            armNextWakeup();
+        } else {
+            cancelWakeup();
+            for (AlarmModel alarm : alarms) {
+                armAlarm(alarm);
+            }
+        }
+    }
+
+    /**
+     * Registers the single wakeup for the earliest alarm that hasn't fired yet, or removes it
+     * when there is none. Only used in single wakeup mode.
+     */
+    synchronized void armNextWakeup() {
+        long fireTime = alarmDB.getNextFireTime();
+        if (fireTime == armedWakeup) {
+            return;
+        }
+
+        if (fireTime < 0) {
+            cancelWakeup();
+            return;
+        }
+
+        Trace.record(Trace.WAKEUP, 0, fireTime);
+        setExact(fireTime, createWakeupIntent());
+        armedWakeup = fireTime;
+    }
+
+    /**
+     * The wakeup registration is used up once it fired.
+     */
+    synchronized void onWakeup() {
+        armedWakeup = -1;
+    }
+
+    private synchronized void cancelWakeup() {
+        getAlarmManager().cancel(createWakeupIntent());
+        armedWakeup = -1;
+    }
+
+    private PendingIntent createWakeupIntent() {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(Constants.ACTION_WAKEUP);
+        intent.putExtra("intentType", Constants.WAKEUP_INTENT);
+        return PendingIntent.getBroadcast(context, WAKEUP_REQUEST_CODE, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    /**
+     * Called once the notifications of the given alarms have been posted. Once alarms are marked
+     * as delivered, repeating alarms move on to their next occurrence and are armed for it, or
+     * are marked as delivered when their recurrence has ended.
+     */
+    void onAlarmsDelivered(List<AlarmModel> alarms) {
+        if (alarms.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean singleWakeup = settings.isSingleWakeup();
+        boolean[] rearm = new boolean[alarms.size()];
+        for (int i = 0; i < alarms.size(); i++) {
+            AlarmModel alarm = alarms.get(i);
+            if ("repeat".equals(alarm.getScheduleType())) {
+                alarm.setOccurrences(alarm.getOccurrences() + 1);
+                long next = Recurrence.of(alarm).next(alarm.getFireTime(), alarm.getOccurrences(), now);
+                Trace.record(Trace.REARM, alarm.getId(), next);
+                if (next < 0) {
+                    alarm.setDelivered(true);
+                    if (!singleWakeup && alarm.getFireTime() > now) {
+                        cancelAlarmIntent(alarm.getNotificationId());
+                    }
+                } else {
+                    alarm.setFireTime(next);
+                    rearm[i] = true;
+                }
+            } else {
+                alarm.setDelivered(true);
+                if (!singleWakeup && alarm.getFireTime() > now) {
+                    // delivered early with a coalesced group, its own registration is not needed anymore
+                    cancelAlarmIntent(alarm.getNotificationId());
+                }
+            }
+        }
+        boolean[] updated = alarmDB.update(alarms);
 
-        Calendar calendar = alarm.snooze();
+        if (singleWakeup) {
+            armNextWakeup();
+        } else {
+            for (int i = 0; i < alarms.size(); i++) {
+                // alarms deleted in the meantime stay deleted
+                if (rearm[i] && updated[i]) {
+                    armAlarm(alarms.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether an alarm whose own registration just fired has already been delivered ahead of time
+     * with a coalesced group. Repeating alarms have then moved on to their next occurrence.
+     */
+    boolean isDeliveredEarly(AlarmModel alarm, long now) {
+        if (alarm.isDelivered()) {
+            return true;
+        }
+        return "repeat".equals(alarm.getScheduleType()) && alarm.getFireTime() > now + EARLY_TOLERANCE;
+    }
 
-        long time = System.currentTimeMillis() / 1000;
+    private void setExact(long triggerAtMillis, PendingIntent alarmIntent) {
+        AlarmManager alarmManager = this.getAlarmManager();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, alarmIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAtMillis, alarmIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, triggerAtMillis, alarmIntent);
+        }
+    }
+
+    private void cancelAlarmIntent(int notificationId) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        PendingIntent alarmIntent = PendingIntent.getBroadcast(context, notificationId, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        getAlarmManager().cancel(alarmIntent);
+    }
 
-        int notificationId = (int) time;
-        alarm.setNotificationId(notificationId);
-        alarmDB.update(alarm);
+    private boolean armAlarm(AlarmModel alarm) {
+        int notificationId = alarm.getNotificationId();
 
         Intent intent = new Intent(context, AlarmReceiver.class);
         intent.putExtra("intentType", ADD_INTENT);
         intent.putExtra("PendingId", alarm.getId());
 
         PendingIntent alarmIntent = PendingIntent.getBroadcast(context, notificationId, intent, 0);
-        AlarmManager alarmManager = this.getAlarmManager();
 
         String scheduleType = alarm.getScheduleType();
         switch(scheduleType) {
             case "once":
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), alarmIntent);
-                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-                    alarmManager.setExact(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), alarmIntent);
-                } else {
-                    alarmManager.set(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), alarmIntent);
-                }
-                break;
-
             case "repeat":
-                long interval = this.getInterval(alarm.getInterval(), alarm.getIntervalValue());
-                alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), interval, alarmIntent);
+                // repeating alarms are armed for one occurrence and re-armed once it is delivered
+                setExact(alarm.getFireTime(), alarmIntent);
                 break;
 
             default:
                 Log.w(Constants.TAG, "Schedule type should either be once or repeat");
-                break;
+                return false;
         }
+
+        return true;
     }
 
-    long getInterval(String interval, int value) {
-        long duration = 1;
+    void snoozeAlarm(AlarmModel alarm) {
+        boolean singleWakeup = settings.isSingleWakeup();
+        if (!singleWakeup) {
+            // the registration would otherwise still fire under the old request code
+            cancelAlarmIntent(alarm.getNotificationId());
+        }
 
-        switch (interval) {
-            case "minutely":
-                duration = value;
-                break;
-            case "hourly":
-                duration = 60 * value;
-                break;
-            case "daily":
-                duration = 60 * 24;
-                break;
-            case "weekly":
-                duration = 60 * 24 * 7;
-                break;
+        alarm.snooze();
+
+        alarm.setNotificationId(alarmDB.nextNotificationId());
+        alarm.setDelivered(false);
+        if (!alarmDB.update(alarm)) {
+            Log.w(Constants.TAG, "Cannot snooze alarm " + alarm.getId() + " as it was deleted");
+            return;
         }
+        Trace.record(Trace.SNOOZE, alarm.getId(), alarm.getFireTime());
 
-        return duration * 60 * 1000;
+        if (singleWakeup) {
+            armNextWakeup();
+        } else {
+            armAlarm(alarm);
+        }
     }
 
     void cancelOnceAlarm(int id) {
@@ -217,26 +564,200 @@ class AlarmUtil {
     }
 
     void stopAlarm(AlarmModel alarm) {
-        int alarmId = alarm.getId();
-        Log.i(Constants.TAG, "Stopping alarm id " + alarmId);
+        cancelAlarm(alarm);
+        if (settings.isSingleWakeup()) {
+            armNextWakeup();
+        }
+        this.setBootReceiver();
+    }
 
-        int notificationId = alarm.getNotificationId();
-        Log.i(Constants.TAG, "Cancelling notification id " + notificationId);
+    /**
+     * Deletes the alarms with the given ids. Returns the number of alarms deleted.
+     */
+    int deleteAlarms(int[] ids) {
+        return onAlarmsDeleted(alarmDB.deleteAlarms(ids));
+    }
+
+    int deleteAlarmsByTag(String tag) {
+        return onAlarmsDeleted(alarmDB.deleteAlarmsByTag(tag));
+    }
+
+    int deleteAllAlarms() {
+        return onAlarmsDeleted(alarmDB.deleteAllAlarms());
+    }
+
+    /**
+     * Applies a patch with the keys of scheduleAlarm to a stored alarm, it keeps its id and
+     * notification id. Its registration is only replaced when its schedule changed, a
+     * notification it has already posted is updated without alerting again, or removed when the
+     * alarm is to fire again.
+     *
+     * @return the updated alarm, or null when there is no alarm with the id
+     */
+    synchronized AlarmModel updateAlarm(int id, Bundle patch) {
+        long start = System.nanoTime();
+        AlarmModel before;
+        AlarmModel alarm;
+        boolean rescheduled;
+        // a delivery or snooze written between reading the alarm and writing it back would be lost
+        synchronized (alarmDB.getWriteLock()) {
+            before = alarmDB.getAlarm(id);
+            if (before == null) {
+                return null;
+            }
+            alarm = new AlarmModel(before);
+            AlarmSerializer.applyPatch(alarm, patch);
+
+            rescheduled = !alarm.isSameSchedule(before);
+            if (rescheduled) {
+                // repeating alarms whose schedule now starts in the past go on from their next occurrence
+                long now = System.currentTimeMillis();
+                boolean pending = "repeat".equals(alarm.getScheduleType())
+                        ? Recurrence.catchUp(alarm, now) : alarm.getFireTime() > now;
+                alarm.setDelivered(!pending);
+            }
+            if (!alarmDB.update(alarm)) {
+                return null;
+            }
+        }
+        Trace.record(Trace.UPDATE, alarm.getId(), alarm.getFireTime());
+
+        if (rescheduled) {
+            if (settings.isSingleWakeup()) {
+                armNextWakeup();
+            } else if (alarm.isDelivered()) {
+                cancelAlarmIntent(alarm.getNotificationId());
+            } else {
+                armAlarm(alarm);
+            }
+        }
 
         NotificationManager notificationManager = this.getNotificationManager();
-        notificationManager.cancel(notificationId);
+        if (isNotificationShowing(notificationManager, before)) {
+            boolean firesAgain = rescheduled && !alarm.isDelivered();
+            boolean sameTag = before.getTag() == null ? alarm.getTag() == null : before.getTag().equals(alarm.getTag());
+            if (firesAgain || !sameTag) {
+                cancelNotification(notificationManager, before);
+            }
+            if (!firesAgain) {
+                AlarmReceiver.updateNotification(context, notificationManager, alarm);
+            }
+        }
+        Metrics.SET_ALARM.recordSince(start);
+        return alarm;
+    }
 
-        Intent intent = new Intent(context, AlarmReceiver.class);
-        PendingIntent alarmIntent = PendingIntent.getBroadcast(context, notificationId, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    // before Marshmallow posted notifications can't be listed, delivered once alarms are assumed to show theirs
+    private boolean isNotificationShowing(NotificationManager notificationManager, AlarmModel alarm) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return alarm.isDelivered() && !"repeat".equals(alarm.getScheduleType());
+        }
 
-        Log.i(Constants.TAG, "Cancelling alarm id " + alarmId);
-        AlarmManager alarmManager = this.getAlarmManager();
-        alarmManager.cancel(alarmIntent);
+        String tag = alarm.getTag() != null && !alarm.getTag().equals("") ? alarm.getTag() : null;
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            if (notification.getId() == alarm.getNotificationId()
+                    && (tag == null ? notification.getTag() == null : tag.equals(notification.getTag()))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        Log.i(Constants.TAG, "Deleting alarm id " + alarmId);
-        alarmDB.delete(alarmId);
+    /**
+     * Brings the alarms with an external key in line with the desired ones: only the alarms that
+     * are new, changed or no longer wanted are written and armed or cancelled, in one transaction.
+     */
+    synchronized AlarmSync syncAlarms(List<AlarmModel> desired) {
+        long start = System.nanoTime();
+        AlarmSync sync;
+        // no other write may change the alarms between the diff and applying it
+        synchronized (alarmDB.getWriteLock()) {
+            sync = AlarmSync.diff(alarmDB.getExternalKeyAlarms(), desired, System.currentTimeMillis());
+            if (sync.isEmpty()) {
+                return sync;
+            }
+            alarmDB.applySync(sync);
+        }
+
+        boolean singleWakeup = settings.isSingleWakeup();
+        NotificationManager notificationManager = this.getNotificationManager();
+        for (AlarmModel alarm : sync.deletes) {
+            Trace.record(Trace.CANCEL, alarm.getId(), alarm.getNotificationId());
+            cancelNotification(notificationManager, alarm);
+            if (!singleWakeup) {
+                cancelAlarmIntent(alarm.getNotificationId());
+            }
+        }
+        for (AlarmModel alarm : sync.updates) {
+            Trace.record(Trace.SCHEDULE, alarm.getId(), alarm.getFireTime());
+            if (singleWakeup) {
+                continue;
+            }
+            if (alarm.isDelivered()) {
+                cancelAlarmIntent(alarm.getNotificationId());
+            } else {
+                armAlarm(alarm);
+            }
+        }
+        for (AlarmModel alarm : sync.inserts) {
+            Trace.record(Trace.SCHEDULE, alarm.getId(), alarm.getFireTime());
+            if (!singleWakeup) {
+                armAlarm(alarm);
+            }
+        }
+
+        if (singleWakeup) {
+            armNextWakeup();
+        }
+        this.setBootReceiver();
+        Metrics.SET_ALARM.recordSince(start);
+        return sync;
+    }
 
+    /**
+     * Removes the notifications and registrations of alarms deleted in bulk, re-arming and
+     * updating the boot receiver once for all of them.
+     */
+    private int onAlarmsDeleted(List<AlarmModel> alarms) {
+        if (alarms.isEmpty()) {
+            return 0;
+        }
+
+        boolean singleWakeup = settings.isSingleWakeup();
+        NotificationManager notificationManager = this.getNotificationManager();
+        for (AlarmModel alarm : alarms) {
+            Trace.record(Trace.CANCEL, alarm.getId(), alarm.getNotificationId());
+            cancelNotification(notificationManager, alarm);
+            if (!singleWakeup) {
+                cancelAlarmIntent(alarm.getNotificationId());
+            }
+        }
+
+        if (singleWakeup) {
+            armNextWakeup();
+        }
         this.setBootReceiver();
+        return alarms.size();
+    }
+
+    private void cancelAlarm(AlarmModel alarm) {
+        int alarmId = alarm.getId();
+        int notificationId = alarm.getNotificationId();
+        Trace.record(Trace.CANCEL, alarmId, notificationId);
+
+        cancelNotification(this.getNotificationManager(), alarm);
+        cancelAlarmIntent(notificationId);
+        alarmDB.delete(alarmId);
+    }
+
+    // notifications of alarms with a tag are posted with it
+    void cancelNotification(NotificationManager notificationManager, AlarmModel alarm) {
+        String tag = alarm.getTag();
+        if (tag != null && !tag.equals("")) {
+            notificationManager.cancel(tag, alarm.getNotificationId());
+        } else {
+            notificationManager.cancel(alarm.getNotificationId());
+        }
     }
 
     private void enableBootReceiver(Context context) {
@@ -256,14 +777,17 @@ class AlarmUtil {
     }
 
     private void disableBootReceiver(Context context) {
-        Log.i(Constants.TAG, "Disable boot receiver");
-
         ComponentName receiver = new ComponentName(context, AlarmBootReceiver.class);
         PackageManager pm = context.getPackageManager();
 
-        pm.setComponentEnabledSetting(receiver,
-                PackageManager.COMPONENT_ENABLED_STATE_DISABLED,
-                PackageManager.DONT_KILL_APP);
+        // the manifest declares the receiver disabled, so the default state is disabled too
+        int setting = pm.getComponentEnabledSetting(receiver);
+        if (setting == PackageManager.COMPONENT_ENABLED_STATE_ENABLED) {
+            Log.i(Constants.TAG, "Disable boot receiver");
+            pm.setComponentEnabledSetting(receiver,
+                    PackageManager.COMPONENT_ENABLED_STATE_DISABLED,
+                    PackageManager.DONT_KILL_APP);
+        }
     }
 
     void removeFiredNotification(int id) {
@@ -273,9 +797,8 @@ class AlarmUtil {
                 Log.w(Constants.TAG, "Cannot remove notification as alarm id " + id + " doesn't exist");
                 return;
             }
-            int notificationId = alarm.getNotificationId();
-            getNotificationManager().cancel(notificationId);
-            Log.i(Constants.TAG, "Removed fired alarm " + id + " with notificationId: " + notificationId);
+            cancelNotification(getNotificationManager(), alarm);
+            Log.i(Constants.TAG, "Removed fired alarm " + id + " with notificationId: " + alarm.getNotificationId());
         } catch (Exception e) {
             Log.e(Constants.TAG, "Could not remove fired notification with id " + id, e);
         }
@@ -284,28 +807,4 @@ class AlarmUtil {
     void removeAllFiredNotifications() {
         getNotificationManager().cancelAll();
     }
-
-    WritableMap convertJsonToMap(JSONObject jsonObject) throws JSONException {
-        WritableMap map = new WritableNativeMap();
-
-        Iterator<String> iterator = jsonObject.keys();
-        while (iterator.hasNext()) {
-            String key = iterator.next();
-            Object value = jsonObject.get(key);
-            if (value instanceof JSONObject) {
-                map.putMap(key, convertJsonToMap((JSONObject) value));
-            } else if (value instanceof Boolean) {
-                map.putBoolean(key, (Boolean) value);
-            } else if (value instanceof Integer) {
-                map.putInt(key, (Integer) value);
-            } else if (value instanceof Double) {
-                map.putDouble(key, (Double) value);
-            } else if (value instanceof String) {
-                map.putString(key, (String) value);
-            } else {
-                map.putString(key, value.toString());
-            }
-        }
-        return map;
-    }
 }
@@ -0,0 +1,136 @@
+package com.emekalites.react.alarm.notification;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Color;
+import android.media.AudioAttributes;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Creates the notification channels used by alarms, only when they are missing.
+ *
+ * Sound, vibration and lights of a channel can't be changed, and a channel created again with
+ * a deleted id gets its old settings back. So each combination of these settings (its
+ * fingerprint) gets a channel of its own: the first one seen for a channel id uses the id as
+ * is, others the id suffixed by the fingerprint's hash. Channels are never deleted, since that
+ * would also remove the notifications posted on them, e.g. by alarms sharing a channel id with
+ * different settings. The fingerprint of the plain id is persisted, and channels are checked
+ * against the notification service once per process in case they were deleted in the meantime.
+ * A channel that exists without a recorded fingerprint, e.g. created by the app, is left alone.
+ */
+class ChannelRegistry {
+
+    private static ChannelRegistry instance;
+
+    private static final String PREFS_NAME = "rnan_channels";
+
+    private static final CharSequence CHANNEL_NAME = "Alarm Notify";
+
+    private final NotificationManager notificationManager;
+    private final SharedPreferences prefs;
+
+    // ids to post on by channel id and fingerprint, for the channels known to exist in this process
+    private final HashMap<String, String> verified = new HashMap<>();
+
+    private ChannelRegistry(Context context) {
+        notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    static synchronized ChannelRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChannelRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Makes sure a channel with the alarm's settings exists and returns the id to post the
+     * alarm's notification on. Before Android O this is the alarm's channel as is.
+     */
+    synchronized String ensureChannel(AlarmModel alarm) {
+        String channelID = alarm.getChannel();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return channelID;
+        }
+
+        long[] vibrationPattern = AlarmReceiver.getVibrationPattern(alarm);
+        // TODO use user-supplied sound if available
+        Uri soundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM);
+
+        String fingerprint = fingerprint(alarm, vibrationPattern, soundUri);
+        String key = channelID + "\n" + fingerprint;
+        String postOn = verified.get(key);
+        if (postOn != null) {
+            return postOn;
+        }
+
+        String stored = prefs.getString(channelID, null);
+        if (stored == null || stored.equals(fingerprint)) {
+            postOn = channelID;
+        } else {
+            postOn = channelID + "_" + Integer.toHexString(fingerprint.hashCode());
+        }
+
+        if (notificationManager.getNotificationChannel(postOn) == null) {
+            notificationManager.createNotificationChannel(createChannel(postOn, alarm, vibrationPattern, soundUri));
+            Log.d(Constants.TAG, "Created notification channel " + postOn);
+        } else if (stored == null) {
+            Log.w(Constants.TAG, "Notification channel " + postOn + " already exists, its settings are kept");
+        }
+        if (stored == null) {
+            prefs.edit().putString(channelID, fingerprint).apply();
+        }
+
+        verified.put(key, postOn);
+        return postOn;
+    }
+
+    private static String fingerprint(AlarmModel alarm, long[] vibrationPattern, Uri soundUri) {
+        return CHANNEL_NAME
+                + "|" + alarm.getColor()
+                + "|" + (alarm.isVibrate() ? Arrays.toString(vibrationPattern) : "-")
+                + "|" + (alarm.isPlaySound() ? String.valueOf(soundUri) : "-")
+                + "|" + alarm.isBypassDnd();
+    }
+
+    private static NotificationChannel createChannel(String channelID, AlarmModel alarm, long[] vibrationPattern, Uri soundUri) {
+        NotificationChannel mChannel = new NotificationChannel(channelID, CHANNEL_NAME, NotificationManager.IMPORTANCE_HIGH);
+        mChannel.enableLights(true);
+
+        // set color
+        String color = alarm.getColor();
+        if (color != null && !color.equals("")) {
+            mChannel.setLightColor(Color.parseColor(color));
+        }
+
+        // set vibration
+        if (alarm.isVibrate()) {
+            mChannel.setVibrationPattern(vibrationPattern);
+            mChannel.enableVibration(true);
+        }
+
+        // set sound
+        if (alarm.isPlaySound()) {
+            AudioAttributes audioAttributes = new AudioAttributes.Builder()
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                    .setUsage(AudioAttributes.USAGE_ALARM)
+                    .build();
+            mChannel.setSound(soundUri, audioAttributes);
+        }
+
+        if (mChannel.canBypassDnd()) {
+            mChannel.setBypassDnd(alarm.isBypassDnd());
+        }
+
+        return mChannel;
+    }
+}
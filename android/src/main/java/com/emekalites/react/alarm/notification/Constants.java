@@ -5,10 +5,27 @@ class Constants {
 
     // TODO convert to action
     static final String ADD_INTENT = "com.emekalites.react.alarm.notification.ADD_INTENT";
+    static final String WAKEUP_INTENT = "com.emekalites.react.alarm.notification.WAKEUP_INTENT";
+
+    static final String ACTION_WAKEUP = "com.emekalites.react.alarm.notification.ACTION_WAKEUP";
 
     static final String NOTIFICATION_ALARM_ID = "com.emekalites.react.alarm.notification.ALARM_ID";
 
     static final String NOTIFICATION_ACTION_DISMISS = "com.emekalites.react.alarm.notification.ACTION_DISMISS";
     static final String NOTIFICATION_ACTION_SNOOZE = "com.emekalites.react.alarm.notification.ACTION_SNOOZE";
     static final String NOTIFICATION_ACTION_CLICK = "com.emekalites.react.alarm.notification.ACTION_CLICK";
+
+    // what scheduleAlarm does when an active alarm is already set at the same time
+    static final String DUPLICATE_REJECT = "reject";
+    static final String DUPLICATE_REPLACE = "replace";
+    static final String DUPLICATE_ALLOW = "allow";
+
+    // per_alarm registers one PendingIntent per alarm, single_wakeup only the next due alarm
+    static final String SCHEDULER_PER_ALARM = "per_alarm";
+    static final String SCHEDULER_SINGLE_WAKEUP = "single_wakeup";
+
+    // what to do with once alarms that came due while the device was off
+    static final String MISSED_DIGEST = "digest";
+    static final String MISSED_DROP = "drop";
+    static final String MISSED_INDIVIDUAL = "individual";
 }
@@ -0,0 +1,149 @@
+package com.emekalites.react.alarm.notification;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+/**
+ * Caches the resource ids of notification icons and the decoded large icon bitmaps.
+ *
+ * Large icons are decoded at the size the notification shows them at, not at the full
+ * resolution of the resource. Bitmaps are kept within a memory budget and dropped when the
+ * system asks the app to trim its memory.
+ */
+class IconCache implements ComponentCallbacks2 {
+
+    private static IconCache instance;
+
+    private static final int MAX_RESOURCE_IDS = 64;
+
+    // upper bound of the bitmap budget, a small part of the heap on low memory devices
+    private static final int MAX_BITMAP_BYTES = 4 * 1024 * 1024;
+
+    private final Context context;
+
+    private final LruCache<String, Integer> resourceIds = new LruCache<>(MAX_RESOURCE_IDS);
+
+    private final LruCache<Integer, Bitmap> bitmaps;
+
+    private IconCache(Context context) {
+        this.context = context;
+
+        int budget = (int) Math.min(MAX_BITMAP_BYTES, Runtime.getRuntime().maxMemory() / 32);
+        bitmaps = new LruCache<Integer, Bitmap>(budget) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    static synchronized IconCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new IconCache(context.getApplicationContext());
+            instance.context.registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Id of a mipmap resource of the app, 0 if there is none with this name.
+     */
+    int getMipmapId(String name) {
+        Integer id = resourceIds.get(name);
+        if (id == null) {
+            id = context.getResources().getIdentifier(name, "mipmap", context.getPackageName());
+            resourceIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Large icon bitmap for a mipmap resource, or null if it doesn't exist or can't be decoded.
+     */
+    Bitmap getLargeIcon(String name) {
+        int resId = getMipmapId(name);
+        if (resId == 0) {
+            return null;
+        }
+
+        Bitmap bitmap = bitmaps.get(resId);
+        if (bitmap == null) {
+            bitmap = decodeLargeIcon(resId);
+            if (bitmap != null) {
+                bitmaps.put(resId, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private Bitmap decodeLargeIcon(int resId) {
+        Resources res = context.getResources();
+        int width = res.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        int height = res.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(res, resId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            // not a bitmap, e.g. an adaptive icon
+            return null;
+        }
+
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        Bitmap bitmap = BitmapFactory.decodeResource(res, resId, options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        if (bitmap.getWidth() > width || bitmap.getHeight() > height) {
+            float scale = Math.min((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+            int scaledWidth = Math.max(1, Math.round(bitmap.getWidth() * scale));
+            int scaledHeight = Math.max(1, Math.round(bitmap.getHeight() * scale));
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = scaled;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Largest power of two that keeps the decoded image at least as big as the target.
+     */
+    private static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            bitmaps.evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            bitmaps.trimToSize(bitmaps.size() / 2);
+        }
+        Log.d(Constants.TAG, "Trimmed icon cache, level " + level + ", " + bitmaps.size() + " bytes left");
+    }
+
+    @Override
+    public void onLowMemory() {
+        bitmaps.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // icons may have to be decoded for another density
+        bitmaps.evictAll();
+    }
+}
@@ -0,0 +1,129 @@
+package com.emekalites.react.alarm.notification;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the work of the broadcast receivers on a background thread instead of the main thread.
+ *
+ * The receiver's broadcast is kept open with goAsync() and a timed wake lock keeps the device
+ * awake until the work is done. Work runs on a single thread, so alarms are never stored and
+ * scheduled concurrently by two receivers. The queue is unbounded, a burst of broadcasts waits its
+ * turn rather than being dropped or run on the main thread.
+ */
+class ReceiverExecutor {
+
+    // receivers must finish well before the system gives up on the broadcast
+    private static final long WAKE_LOCK_TIMEOUT = 9000;
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    interface Work {
+        void run(Stages stages) throws Exception;
+    }
+
+    /**
+     * Time spent in each stage of a piece of work, for the logs.
+     */
+    static class Stages {
+        private final StringBuilder summary = new StringBuilder();
+        private final long start;
+        private long last;
+
+        Stages(long start) {
+            this.start = start;
+            this.last = start;
+        }
+
+        void mark(String stage) {
+            long now = SystemClock.elapsedRealtime();
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(stage).append('=').append(now - last).append("ms");
+            last = now;
+        }
+
+        long total() {
+            return SystemClock.elapsedRealtime() - start;
+        }
+
+        @Override
+        public String toString() {
+            return summary.toString();
+        }
+    }
+
+    private ReceiverExecutor() {}
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "rnan-receiver");
+                        thread.setPriority(Thread.NORM_PRIORITY);
+                        return thread;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    static void execute(BroadcastReceiver receiver, Context context, final String name, final Work work) {
+        final BroadcastReceiver.PendingResult result = receiver.goAsync();
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        final PowerManager.WakeLock wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "rnan:" + name);
+        wakeLock.setReferenceCounted(false);
+        wakeLock.acquire(WAKE_LOCK_TIMEOUT);
+
+        final long queued = SystemClock.elapsedRealtime();
+        try {
+            submit(name, work, queued, wakeLock, result);
+        } catch (RejectedExecutionException e) {
+            Log.e(Constants.TAG, "Could not queue " + name, e);
+            finish(wakeLock, result);
+        }
+    }
+
+    private static void submit(final String name, final Work work, final long queued,
+                               final PowerManager.WakeLock wakeLock, final BroadcastReceiver.PendingResult result) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Stages stages = new Stages(queued);
+                stages.mark("queue");
+                try {
+                    work.run(stages);
+                } catch (Exception e) {
+                    Log.e(Constants.TAG, "Failed to handle " + name, e);
+                } finally {
+                    long total = stages.total();
+                    Metrics.RECEIVER.record(total);
+                    Log.i(Constants.TAG, name + " handled in " + total + "ms (" + stages + ")");
+                    finish(wakeLock, result);
+                }
+            }
+        });
+    }
+
+    private static void finish(PowerManager.WakeLock wakeLock, BroadcastReceiver.PendingResult result) {
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+        if (result != null) {
+            result.finish();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.emekalites.react.alarm.notification;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class AlarmDatabaseMigrationTest {
+
+    @Test
+    public void upgradesVersion1Database() {
+        Context context = ApplicationProvider.getApplicationContext();
+
+        // the table and row format of version 1
+        File path = context.getDatabasePath("rnandb");
+        path.getParentFile().mkdirs();
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(path, null);
+        v1.execSQL("CREATE TABLE alarmtbl (id INTEGER PRIMARY KEY AUTOINCREMENT, gson_data TEXT, active INTEGER)");
+        ContentValues values = new ContentValues();
+        values.put("gson_data", "{\"id\":1,\"second\":0,\"minute\":30,\"hour\":8,\"day\":15,\"month\":1,\"year\":2020,"
+                + "\"notificationId\":4242,\"title\":\"Pills\",\"message\":\"Take them\",\"channel\":\"my_channel_id\","
+                + "\"scheduleType\":\"once\",\"tag\":\"medication\",\"active\":1}");
+        values.put("active", 1);
+        v1.insert("alarmtbl", null, values);
+        v1.setVersion(1);
+        v1.close();
+
+        Calendar fireDate = new GregorianCalendar();
+        fireDate.clear();
+        fireDate.set(2020, Calendar.JANUARY, 15, 8, 30, 0);
+
+        AlarmDatabase alarmDB = AlarmDatabase.getInstance(context);
+        String query = "SELECT fire_time, schedule_type, notification_id, tag, delivered FROM alarmtbl";
+        try (Cursor cursor = alarmDB.getReadableDatabase().rawQuery(query, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(fireDate.getTimeInMillis(), cursor.getLong(0));
+            assertEquals("once", cursor.getString(1));
+            assertEquals(4242, cursor.getInt(2));
+            assertEquals("medication", cursor.getString(3));
+            // a once alarm in the past has already fired
+            assertEquals(1, cursor.getInt(4));
+        }
+
+        // new alarms don't reuse the notification ids of migrated ones
+        assertEquals(4243, alarmDB.nextNotificationId());
+    }
+}
@@ -1,13 +1,106 @@
 export default ReactNativeAN;
 
 declare namespace ReactNativeAN {
-    function scheduleAlarm(details: any): Promise<any>;
+    interface AlarmDetails {
+        // a Date, epoch millis or a 'dd-MM-yyyy HH:mm:ss' string
+        fire_date: string | number | Date;
+        // zone id like 'Europe/Berlin' for the fire_date string and recurrences, Android only
+        time_zone?: string;
+        // recurrence of alarms with schedule_type 'repeat', next to repeat_interval
+        // ('minutely' | 'hourly' | 'daily' | 'weekly' | 'monthly' | 'yearly') and interval_value
+        repeat_weekdays?: number[];
+        repeat_month_day?: number;
+        repeat_until?: number | Date;
+        repeat_count?: number;
+        // the app's own id for the alarm, used by syncAlarms, Android only
+        external_key?: string;
+    }
+    function scheduleAlarm(details: AlarmDetails & { [key: string]: any }): Promise<any>;
+    function scheduleAlarms(detailsList: (AlarmDetails & { [key: string]: any })[]): Promise<(number | null)[]>;
+    function updateAlarm(id: number, patch: Partial<AlarmDetails> & { [key: string]: any }): Promise<any>;
+    function syncAlarms(desiredList: (AlarmDetails & { external_key: string; [key: string]: any })[]): Promise<{
+        inserted: number;
+        updated: number;
+        deleted: number;
+        unchanged: number;
+        expired: number;
+    }>;
+    function configure(options: {
+        scheduler_mode?: 'per_alarm' | 'single_wakeup';
+        coalesce_window?: number;
+        main_activity?: string | null;
+        missed_alarm_policy?: 'digest' | 'drop' | 'individual';
+        trace_level?: 'off' | 'events' | 'verbose';
+    }): Promise<void>;
+    function createChannels(channels: {
+        channel: string;
+        color?: string;
+        vibrate?: boolean;
+        vibration_pattern?: string;
+        play_sound?: boolean;
+        bypass_dnd?: boolean;
+    }[]): Promise<void>;
     function deleteAlarm(id: any): void;
     function deleteRepeatingAlarm(id: any): void;
+    function deleteAlarms(ids: number[]): Promise<number>;
+    function deleteAlarmsByTag(tag: string): Promise<number>;
+    function deleteAllAlarms(): Promise<number>;
     function stopAlarmSound(): any;
     function removeFiredNotification(id: any): void;
     function removeAllFiredNotifications(): void;
     function getScheduledAlarms(): Promise<any>;
+    function queryScheduledAlarms(query?: {
+        offset?: number;
+        limit?: number;
+        from?: number | Date;
+        to?: number | Date;
+        tag?: string;
+        fields?: string[];
+    }): Promise<any[]>;
+    interface Histogram {
+        unit: 'ms' | 'us';
+        count: number;
+        mean: number;
+        max: number;
+        p50: number;
+        p90: number;
+        p99: number;
+    }
+    function getDiagnostics(options?: { reset?: boolean }): Promise<{
+        since: number;
+        schedulerMode: 'per_alarm' | 'single_wakeup';
+        registrations: number;
+        activeAlarms: number;
+        metrics: {
+            fireDelay: Histogram;
+            deliveryDelay: Histogram;
+            receiver: Histogram;
+            notificationBuild: Histogram;
+            notificationPost: Histogram;
+            dbRead: Histogram;
+            dbWrite: Histogram;
+            setAlarm: Histogram;
+        };
+    }>;
+    function dumpTrace(options?: { clear?: boolean }): Promise<{
+        time: number;
+        event: 'schedule' | 'fire' | 'deliver' | 'snooze' | 'dismiss' | 'cancel' | 'rearm'
+            | 'boot_rearm' | 'update' | 'wakeup' | 'store';
+        id: number;
+        value: number;
+    }[]>;
+    interface AlarmEvent {
+        id: number;
+        notificationId: number;
+        tag?: string;
+        data?: string;
+        time: number;
+    }
+    // an AlarmEvent on Android, the JSON string of the notification's userInfo on iOS
+    function addEventListener(
+        eventName: 'OnNotificationOpened' | 'OnNotificationDismissed',
+        listener: (event: AlarmEvent | string) => void
+    ): { remove(): void };
     function requestPermissions(permissions: any): Promise<any>;
     function checkPermissions(callback: any): void;
     function parseDate(rawDate: any): string;
@@ -1,4 +1,4 @@
-import { NativeModules } from 'react-native';
+import { DeviceEventEmitter, NativeEventEmitter, NativeModules, Platform } from 'react-native';
 
 const { RNAlarmNotification } = NativeModules;
 const ReactNativeAN = {};
@@ -19,14 +19,55 @@ const parseDateString = (string) => {
 	return new Date(year, month - 1, day, hours, minutes, seconds);
 };
 
-ReactNativeAN.scheduleAlarm = async (details) => {
-	if (!details.fire_date || (details.fire_date && details.fire_date === '')) {
+// fire_date is a Date, epoch millis or a dd-MM-yyyy HH:mm:ss string. Android takes epoch
+// millis, strings are kept so they can be read in time_zone, iOS takes the string.
+const prepareFireDate = (fireDate) => {
+	if (fireDate instanceof Date || typeof fireDate === 'number') {
+		const time = fireDate instanceof Date ? fireDate.getTime() : fireDate;
+		if (isNaN(time)) {
+			throw new Error('failed to schedule alarm because fire date is invalid');
+		}
+		return {
+			time,
+			fire_date: Platform.OS === 'android' ? time : ReactNativeAN.parseDate(new Date(time)),
+		};
+	}
+
+	return { time: parseDateString(fireDate).getTime(), fire_date: fireDate };
+};
+
+// repeat_* keys in the form sent to the native side
+const prepareRecurrence = (details) => {
+	const recurrence = {};
+	if (details.repeat_weekdays != null) {
+		// days of the week, 0 for Sunday to 6, sent as a string like vibration_pattern
+		const weekdays = Array.isArray(details.repeat_weekdays)
+			? details.repeat_weekdays
+			: [details.repeat_weekdays];
+		if (weekdays.some((day) => isNaN(day) || day < 0 || day > 6)) {
+			throw new Error('weekdays should be between 0 (Sunday) and 6');
+		}
+		recurrence.repeat_weekdays = weekdays.join(',');
+	}
+
+	if (details.repeat_until != null) {
+		recurrence.repeat_until = details.repeat_until instanceof Date
+			? details.repeat_until.getTime()
+			: details.repeat_until;
+	}
+
+	return recurrence;
+};
+
+// allowPast: past fire dates are left for the native side, as for syncAlarms
+const prepareAlarm = (details, allowPast = false) => {
+	if (details.fire_date == null || details.fire_date === '') {
 		throw new Error('failed to schedule alarm because fire date is missing');
 	}
 
-	const past = parseDateString(details.fire_date);
-	const today = new Date();
-	if (past < today) {
+	const { time, fire_date } = prepareFireDate(details.fire_date);
+	// a string in another zone can only be compared once read in that zone
+	if (!allowPast && !(typeof fire_date === 'string' && details.time_zone) && time < Date.now()) {
 		throw new Error(
 			'failed to schedule alarm because fire date is in the past'
 		);
@@ -52,6 +93,7 @@ ReactNativeAN.scheduleAlarm = async (details) => {
 
 	const data = {
 		...details,
+		fire_date,
 		has_button: details.has_button || false,
 		vibrate: details.vibrate || true,
 		play_sound: details.play_sound || true,
@@ -62,11 +104,87 @@ ReactNativeAN.scheduleAlarm = async (details) => {
 		sound_name: details.sound_name || '',
 		snooze_interval: details.snooze_interval || 1,
 		data: details.data || '',
+		...prepareRecurrence(details),
 	};
 
+	return data;
+};
+
+ReactNativeAN.scheduleAlarm = async (details) => {
+	const data = prepareAlarm(details);
+
 	return await RNAlarmNotification.scheduleAlarm(data);
 };
 
+// resolves with one id per alarm, null for alarms skipped as duplicates
+ReactNativeAN.scheduleAlarms = async (detailsList) => {
+	if (!Array.isArray(detailsList)) {
+		throw new Error('failed to schedule alarms because the list is missing');
+	}
+
+	const data = detailsList.map((details) => prepareAlarm(details));
+
+	return await RNAlarmNotification.scheduleAlarms(data);
+};
+
+// android only. Changes only the given keys of a scheduled alarm, which keeps its id, and
+// resolves with the updated alarm. It is armed again only when its schedule changed, a
+// notification it has already shown is updated in place without alerting again.
+ReactNativeAN.updateAlarm = async (id, patch) => {
+	if (!id) {
+		throw new Error('id is required to update alarm');
+	}
+	if (!patch) {
+		throw new Error('failed to update alarm because the changes are missing');
+	}
+
+	const data = { ...patch, ...prepareRecurrence(patch) };
+	if (patch.fire_date != null) {
+		const { time, fire_date } = prepareFireDate(patch.fire_date);
+		if (!(typeof fire_date === 'string' && patch.time_zone) && time < Date.now()) {
+			throw new Error('failed to update alarm because fire date is in the past');
+		}
+		data.fire_date = fire_date;
+	}
+
+	return await RNAlarmNotification.updateAlarm(id, data);
+};
+
+// android only. Makes the alarms scheduled with an external_key match desiredList, where every
+// entry has a unique external_key: new keys are scheduled, changed ones updated and missing ones
+// deleted, alarms without an external_key are not touched. Past once alarms that no longer
+// exist are not scheduled again and repeating alarms keep the occurrence they have reached.
+// Resolves with { inserted, updated, deleted, unchanged, expired }.
+ReactNativeAN.syncAlarms = async (desiredList) => {
+	if (!Array.isArray(desiredList)) {
+		throw new Error('failed to sync alarms because the list is missing');
+	}
+
+	const data = desiredList.map((details) => {
+		if (!details.external_key) {
+			throw new Error('failed to sync alarms because an external key is missing');
+		}
+		return prepareAlarm(details, true);
+	});
+
+	return await RNAlarmNotification.syncAlarms(data);
+};
+
+// options: { scheduler_mode: 'per_alarm' | 'single_wakeup', coalesce_window: millis, main_activity: class name,
+//   missed_alarm_policy: 'digest' | 'drop' | 'individual', trace_level: 'off' | 'events' | 'verbose' }
+ReactNativeAN.configure = async (options) => {
+	return await RNAlarmNotification.configure(options || {});
+};
+
+// channels: [{ channel, color, vibrate, vibration_pattern, play_sound, bypass_dnd }]
+ReactNativeAN.createChannels = async (channels) => {
+	if (!Array.isArray(channels)) {
+		throw new Error('failed to create channels because the list is missing');
+	}
+
+	return await RNAlarmNotification.createChannels(channels);
+};
+
 ReactNativeAN.deleteAlarm = (id) => {
 	if (!id) {
 		throw new Error('id is required to delete alarm');
@@ -83,6 +201,27 @@ ReactNativeAN.deleteRepeatingAlarm = (id) => {
 	RNAlarmNotification.deleteRepeatingAlarm(id);
 };
 
+// resolves with the number of alarms deleted
+ReactNativeAN.deleteAlarms = async (ids) => {
+	if (!Array.isArray(ids)) {
+		throw new Error('ids are required to delete alarms');
+	}
+
+	return await RNAlarmNotification.deleteAlarms(ids);
+};
+
+ReactNativeAN.deleteAlarmsByTag = async (tag) => {
+	if (!tag) {
+		throw new Error('tag is required to delete alarms');
+	}
+
+	return await RNAlarmNotification.deleteAlarmsByTag(tag);
+};
+
+ReactNativeAN.deleteAllAlarms = async () => {
+	return await RNAlarmNotification.deleteAllAlarms();
+};
+
 ReactNativeAN.stopAlarmSound = () => {
 	return RNAlarmNotification.stopAlarmSound();
 };
@@ -103,6 +242,56 @@ ReactNativeAN.getScheduledAlarms = async () => {
 	return await RNAlarmNotification.getScheduledAlarms();
 };
 
+// query: { offset, limit, from, to, tag, fields }, from/to are epoch millis or Date
+ReactNativeAN.queryScheduledAlarms = async (query = {}) => {
+	const data = { ...query };
+	if (data.from instanceof Date) {
+		data.from = data.from.getTime();
+	}
+	if (data.to instanceof Date) {
+		data.to = data.to.getTime();
+	}
+
+	return await RNAlarmNotification.queryScheduledAlarms(data);
+};
+
+// android only. Resolves with { since, schedulerMode, registrations, activeAlarms, metrics },
+// metrics maps fireDelay, deliveryDelay, receiver, notificationBuild, notificationPost, dbRead,
+// dbWrite and setAlarm to { unit, count, mean, max, p50, p90, p99 }. With reset: true the
+// histograms start over once read.
+ReactNativeAN.getDiagnostics = async (options = {}) => {
+	return await RNAlarmNotification.getDiagnostics(!!options.reset);
+};
+
+// android only. Resolves with the recorded scheduler events, oldest first, as
+// [{ time, event, id, value }] where event is schedule, fire, deliver, snooze, dismiss, cancel,
+// rearm, boot_rearm or update, and wakeup or store with trace_level 'verbose'. id is the alarm
+// id, for boot_rearm it is the number of pending alarms and value the number missed. With
+// clear: true the trace starts over once read.
+ReactNativeAN.dumpTrace = async (options = {}) => {
+	return await RNAlarmNotification.dumpTrace(!!options.clear);
+};
+
+const emitter = Platform.OS === 'ios' ? new NativeEventEmitter(RNAlarmNotification) : DeviceEventEmitter;
+
+// eventName: 'OnNotificationOpened' | 'OnNotificationDismissed', on android the listener gets
+// { id, notificationId, tag, data, time }, on ios the JSON string of the notification's userInfo.
+// On android, events are queued until the first listener subscribes here, then delivered in order.
+ReactNativeAN.addEventListener = (eventName, listener) => {
+	const subscription = emitter.addListener(eventName, listener);
+	if (Platform.OS === 'ios') {
+		return subscription;
+	}
+
+	RNAlarmNotification.addListener(eventName);
+	return {
+		remove: () => {
+			subscription.remove();
+			RNAlarmNotification.removeListeners(1);
+		},
+	};
+};
+
 // ios request permission
 ReactNativeAN.requestPermissions = async (permissions) => {
 	let requestedPermissions = {